@@ -0,0 +1,50 @@
+package com.itm.space.backend.client.filter;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Проставляет в запрос к бэкенду заголовок {@code X-Request-Deadline} - момент (epoch millis),
+ * после которого гейтвей перестанет ждать ответа. Если клиент прислал более ранний дедлайн, сохраняется он.
+ */
+@Component
+public class RequestDeadlineFilter implements GlobalFilter, Ordered {
+	public static final String DEADLINE_HEADER = "X-Request-Deadline";
+
+	private final Duration responseTimeout;
+
+	public RequestDeadlineFilter(@Value("${spring.cloud.gateway.httpclient.response-timeout}") Duration responseTimeout) {
+		this.responseTimeout = responseTimeout;
+	}
+
+	@Override
+	public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+		long deadline = System.currentTimeMillis() + responseTimeout.toMillis();
+		String requested = exchange.getRequest().getHeaders().getFirst(DEADLINE_HEADER);
+		if (requested != null) {
+			try {
+				deadline = Math.min(deadline, Long.parseLong(requested));
+			} catch (NumberFormatException ex) {
+				// некорректный заголовок клиента заменяем своим
+			}
+		}
+		String value = String.valueOf(deadline);
+		ServerHttpRequest request = exchange.getRequest().mutate()
+				.headers(headers -> headers.set(DEADLINE_HEADER, value))
+				.build();
+		return chain.filter(exchange.mutate().request(request).build());
+	}
+
+	@Override
+	public int getOrder() {
+		return Ordered.HIGHEST_PRECEDENCE;
+	}
+}
@@ -0,0 +1,70 @@
+package com.itm.space.backend.client.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestDeadlineFilterTest {
+	private static final Duration RESPONSE_TIMEOUT = Duration.ofSeconds(10);
+
+	private final RequestDeadlineFilter filter = new RequestDeadlineFilter(RESPONSE_TIMEOUT);
+
+	@Test
+	void shouldAddDeadlineFromResponseTimeout() {
+		long before = System.currentTimeMillis();
+
+		long deadline = forwardedDeadline(MockServerHttpRequest.get("/api/users/1"));
+
+		assertThat(deadline).isBetween(before + RESPONSE_TIMEOUT.toMillis(),
+				System.currentTimeMillis() + RESPONSE_TIMEOUT.toMillis());
+	}
+
+	@Test
+	void shouldKeepEarlierClientDeadline() {
+		long requested = System.currentTimeMillis() + 1000;
+
+		long deadline = forwardedDeadline(MockServerHttpRequest.get("/api/users/1")
+				.header(RequestDeadlineFilter.DEADLINE_HEADER, String.valueOf(requested)));
+
+		assertThat(deadline).isEqualTo(requested);
+	}
+
+	@Test
+	void shouldCapLaterClientDeadline() {
+		long requested = System.currentTimeMillis() + RESPONSE_TIMEOUT.toMillis() * 6;
+
+		long deadline = forwardedDeadline(MockServerHttpRequest.get("/api/users/1")
+				.header(RequestDeadlineFilter.DEADLINE_HEADER, String.valueOf(requested)));
+
+		assertThat(deadline).isLessThan(requested)
+				.isLessThanOrEqualTo(System.currentTimeMillis() + RESPONSE_TIMEOUT.toMillis());
+	}
+
+	@Test
+	void shouldReplaceInvalidClientDeadline() {
+		long before = System.currentTimeMillis();
+
+		long deadline = forwardedDeadline(MockServerHttpRequest.get("/api/users/1")
+				.header(RequestDeadlineFilter.DEADLINE_HEADER, "tomorrow"));
+
+		assertThat(deadline).isGreaterThanOrEqualTo(before + RESPONSE_TIMEOUT.toMillis());
+	}
+
+	// Значение заголовка в запросе, который фильтр передал дальше по цепочке
+	private long forwardedDeadline(MockServerHttpRequest.BaseBuilder<?> request) {
+		AtomicReference<HttpHeaders> forwarded = new AtomicReference<>();
+		filter.filter(MockServerWebExchange.from(request), exchange -> {
+			forwarded.set(exchange.getRequest().getHeaders());
+			return Mono.empty();
+		}).block();
+		assertThat(forwarded.get().get(RequestDeadlineFilter.DEADLINE_HEADER)).hasSize(1);
+		return Long.parseLong(forwarded.get().getFirst(RequestDeadlineFilter.DEADLINE_HEADER));
+	}
+}
@@ -0,0 +1,33 @@
+#!/usr/bin/env bash
+# Прогон сценария из раздела README "Сравнение под нагрузкой" для уже запущенного backend-resources.
+# Печатает строки markdown-таблицы для одного режима; режим (virtual-threads on/off) переключается перезапуском
+# приложения.
+#
+#   TOKEN=... USER_ID=... ./load-test.sh "виртуальные потоки"
+#
+# Переменные: TOKEN, USER_ID - обязательны; BASE_URL (http://backend-resources:9191), DURATION (60s),
+# THREADS (8), CONNECTIONS ("1000 2000").
+set -euo pipefail
+
+mode=${1:?usage: $0 <mode label>}
+: "${TOKEN:?TOKEN is required}"
+: "${USER_ID:?USER_ID is required}"
+base_url=${BASE_URL:-http://backend-resources:9191}
+duration=${DURATION:-60s}
+threads=${THREADS:-8}
+connections=${CONNECTIONS:-1000 2000}
+
+command -v wrk >/dev/null || { echo "wrk is not installed" >&2; exit 1; }
+
+for c in $connections; do
+  output=$(wrk -t"$threads" -c"$c" -d"$duration" --latency \
+    -H "Authorization: Bearer $TOKEN" "$base_url/api/users/$USER_ID")
+  rps=$(awk '/^Requests\/sec:/ {print $2}' <<<"$output")
+  p50=$(awk '$1 == "50%" {print $2}' <<<"$output")
+  p99=$(awk '$1 == "99%" {print $2}' <<<"$output")
+  # Ошибки: ответы не 2xx/3xx плюс ошибки сокетов (connect, read, write, timeout)
+  errors=$(awk '/Non-2xx or 3xx responses:/ {n += $NF}
+                /Socket errors:/ {gsub(",", ""); n += $4 + $6 + $8 + $10}
+                END {print n + 0}' <<<"$output")
+  printf '| %s | %s | %s | %s | %s | %s |\n' "$c" "$mode" "$rps" "$p50" "$p99" "$errors"
+done
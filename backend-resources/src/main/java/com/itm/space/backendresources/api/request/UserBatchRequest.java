@@ -0,0 +1,18 @@
+package com.itm.space.backendresources.api.request;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserBatchRequest {
+    @NotEmpty(message = "Ids should not be empty")
+    private List<@NotNull UUID> ids;
+}
@@ -0,0 +1,17 @@
+package com.itm.space.backendresources.api.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserBulkRequest {
+    @NotEmpty(message = "Users should not be empty")
+    private List<@Valid UserRequest> users;
+}
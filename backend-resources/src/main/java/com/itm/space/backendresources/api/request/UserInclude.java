@@ -0,0 +1,31 @@
+package com.itm.space.backendresources.api.request;
+
+import com.itm.space.backendresources.exception.BackendResourcesException;
+import org.springframework.http.HttpStatus;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+public enum UserInclude {
+    ROLES,
+    GROUPS;
+
+    public static final Set<UserInclude> ALL = Set.of(values());
+
+    public static Set<UserInclude> parse(Collection<String> values) {
+        EnumSet<UserInclude> include = EnumSet.noneOf(UserInclude.class);
+        for (String value : values) {
+            if (value.isBlank()) {
+                continue;
+            }
+            try {
+                include.add(valueOf(value.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException ex) {
+                throw new BackendResourcesException("Unknown include value: " + value, HttpStatus.BAD_REQUEST);
+            }
+        }
+        return include;
+    }
+}
@@ -0,0 +1,24 @@
+package com.itm.space.backendresources.api.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import org.springframework.http.HttpStatus;
+
+import java.util.UUID;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserBatchItemResponse {
+    private final UUID id;
+    private final int status;
+    private final UserResponse user;
+    private final String error;
+
+    public static UserBatchItemResponse found(UUID id, UserResponse user) {
+        return new UserBatchItemResponse(id, HttpStatus.OK.value(), user, null);
+    }
+
+    public static UserBatchItemResponse failed(UUID id, HttpStatus status, String error) {
+        return new UserBatchItemResponse(id, status.value(), null, error);
+    }
+}
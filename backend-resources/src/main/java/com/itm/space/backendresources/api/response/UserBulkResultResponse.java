@@ -0,0 +1,20 @@
+package com.itm.space.backendresources.api.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserBulkResultResponse {
+    private final String username;
+    private final Status status;
+    private final String id;
+    private final String error;
+
+    public enum Status {
+        CREATED,
+        SKIPPED,
+        CONFLICT,
+        FAILED
+    }
+}
@@ -0,0 +1,10 @@
+package com.itm.space.backendresources.api.response;
+
+import lombok.Data;
+
+import java.util.UUID;
+
+@Data
+public class UserCreatedResponse {
+    private final UUID id;
+}
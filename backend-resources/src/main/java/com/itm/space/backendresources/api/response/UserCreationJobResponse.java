@@ -0,0 +1,27 @@
+package com.itm.space.backendresources.api.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserCreationJobResponse {
+    private final UUID id;
+    private final String username;
+    private final Status status;
+    private final UUID userId;
+    private final Integer errorStatus;
+    private final String error;
+    private final Instant submittedAt;
+    private final Instant completedAt;
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        SUCCEEDED,
+        FAILED
+    }
+}
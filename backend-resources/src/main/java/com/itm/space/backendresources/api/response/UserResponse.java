@@ -1,14 +1,18 @@
 package com.itm.space.backendresources.api.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 
 import java.util.List;
 
 @Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class UserResponse {
     private final String firstName;
     private final String lastName;
     private final String email;
     private final List<String> roles;
     private final List<String> groups;
+    // Realm-роли с учётом composite и групп; заполняются, только когда загружены и роли, и группы
+    private List<String> effectiveRoles;
 }
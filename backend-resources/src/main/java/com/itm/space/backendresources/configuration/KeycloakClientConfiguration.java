@@ -1,10 +1,32 @@
 package com.itm.space.backendresources.configuration;
 
+import com.itm.space.backendresources.keycloak.BearerTokenFilter;
+import com.itm.space.backendresources.keycloak.InstrumentedConnectionManager;
+import com.itm.space.backendresources.keycloak.KeycloakAccessTokenProvider;
+import com.itm.space.backendresources.util.VirtualThreads;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.jboss.resteasy.client.jaxrs.ResteasyClient;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+import org.jboss.resteasy.client.jaxrs.engines.ApacheHttpClient43Engine;
 import org.keycloak.admin.client.Keycloak;
 import org.keycloak.admin.client.KeycloakBuilder;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.ws.rs.Priorities;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import static org.keycloak.OAuth2Constants.CLIENT_CREDENTIALS;
 import static org.keycloak.OAuth2Constants.PASSWORD;
@@ -19,15 +41,104 @@ public class KeycloakClientConfiguration {
     private String authUrl;
     @Value("${keycloak.realm}")
     private String realm;
+    @Value("${keycloak.executor.pool-size}")
+    private int executorPoolSize;
+    @Value("${keycloak.executor.queue-capacity}")
+    private int executorQueueCapacity;
+    @Value("${server.virtual-threads.enabled:false}")
+    private boolean virtualThreads;
+    @Value("${keycloak.client.pool-size}")
+    private int poolSize;
+    @Value("${keycloak.client.max-per-route}")
+    private int maxPerRoute;
+    @Value("${keycloak.client.connect-timeout}")
+    private Duration connectTimeout;
+    @Value("${keycloak.client.read-timeout}")
+    private Duration readTimeout;
+    @Value("${keycloak.client.pool-acquire-timeout}")
+    private Duration poolAcquireTimeout;
+    @Value("${keycloak.client.keep-alive}")
+    private Duration keepAlive;
+    @Value("${keycloak.client.idle-timeout}")
+    private Duration idleTimeout;
+    @Value("${keycloak.client.connection-ttl}")
+    private Duration connectionTtl;
+    @Value("${keycloak.token.refresh-fraction}")
+    private double tokenRefreshFraction;
+    @Value("${keycloak.token.refresh-jitter}")
+    private double tokenRefreshJitter;
+    @Value("${keycloak.token.retry-delay}")
+    private Duration tokenRetryDelay;
 
+    // Токен в заголовок ставит BearerTokenFilter, поэтому собственный TokenManager admin-клиенту не нужен
     @Bean
-    public Keycloak keycloak() {
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public Keycloak keycloak(ResteasyClient keycloakHttpClient) {
         return KeycloakBuilder.builder()
+                .serverUrl(authUrl)
+                .realm(realm)
+                .authorization("provided-by-bearer-token-filter")
+                .resteasyClient(keycloakHttpClient)
+                .build();
+    }
+
+    // Токены запрашиваются через отдельный маленький клиент, чтобы не конкурировать с admin-запросами за пул
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public KeycloakAccessTokenProvider keycloakAccessTokenProvider(MeterRegistry meterRegistry) {
+        ResteasyClient tokenHttpClient = new ResteasyClientBuilder()
+                .connectionPoolSize(2)
+                .establishConnectionTimeout(connectTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .socketTimeout(readTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+        Keycloak tokenClient = KeycloakBuilder.builder()
                 .serverUrl(authUrl)
                 .realm(realm)
                 .grantType(CLIENT_CREDENTIALS)
                 .clientId(clientId)
                 .clientSecret(secretKey)
+                .resteasyClient(tokenHttpClient)
                 .build();
+        return new KeycloakAccessTokenProvider(tokenClient, tokenRefreshFraction, tokenRefreshJitter,
+                tokenRetryDelay, meterRegistry);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public ResteasyClient keycloakHttpClient(KeycloakAccessTokenProvider keycloakAccessTokenProvider,
+                                             MeterRegistry meterRegistry) {
+        InstrumentedConnectionManager connectionManager = new InstrumentedConnectionManager(connectionTtl, meterRegistry);
+        connectionManager.setMaxTotal(poolSize);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout((int) connectTimeout.toMillis())
+                .setSocketTimeout((int) readTimeout.toMillis())
+                .setConnectionRequestTimeout((int) poolAcquireTimeout.toMillis())
+                .build();
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy((response, context) -> {
+                    long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE
+                            .getKeepAliveDuration(response, context);
+                    return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAlive.toMillis()) : keepAlive.toMillis();
+                })
+                .evictIdleConnections(idleTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .evictExpiredConnections()
+                .build();
+        return new ResteasyClientBuilder()
+                .httpEngine(new ApacheHttpClient43Engine(httpClient))
+                .register(new BearerTokenFilter(keycloakAccessTokenProvider), Priorities.USER + 100)
+                .build();
+    }
+
+    // С виртуальными потоками пул не нужен: число одновременных вызовов ограничивает KeycloakUserGateway
+    @Bean(destroyMethod = "shutdownNow")
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public ExecutorService keycloakExecutor() {
+        if (virtualThreads) {
+            return VirtualThreads.newThreadPerTaskExecutor("keycloak-vt-");
+        }
+        return new ThreadPoolExecutor(executorPoolSize, executorPoolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(executorQueueCapacity), new CustomizableThreadFactory("keycloak-"));
     }
 }
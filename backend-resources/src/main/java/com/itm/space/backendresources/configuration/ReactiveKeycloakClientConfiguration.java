@@ -0,0 +1,90 @@
+package com.itm.space.backendresources.configuration;
+
+import com.itm.space.backendresources.keycloak.KeycloakAccessTokenProvider;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * Неблокирующий клиент admin REST API Keycloak для профиля {@code reactive}.
+ * Пул соединений настраивается теми же свойствами {@code keycloak.client.*}, что и RESTEasy-клиент.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveKeycloakClientConfiguration {
+    @Value("${keycloak.auth-server-url}")
+    private String authUrl;
+    @Value("${keycloak.realm}")
+    private String realm;
+    @Value("${keycloak.client.pool-size}")
+    private int poolSize;
+    @Value("${keycloak.client.connect-timeout}")
+    private Duration connectTimeout;
+    @Value("${keycloak.client.read-timeout}")
+    private Duration readTimeout;
+    @Value("${keycloak.client.pool-acquire-timeout}")
+    private Duration poolAcquireTimeout;
+    @Value("${keycloak.client.idle-timeout}")
+    private Duration idleTimeout;
+    @Value("${keycloak.client.connection-ttl}")
+    private Duration connectionTtl;
+
+    // В classpath есть и Tomcat, который Spring Boot выбрал бы первым; реактивный стек должен работать на Netty
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider keycloakConnectionProvider() {
+        return ConnectionProvider.builder("keycloak")
+                .maxConnections(poolSize)
+                .pendingAcquireTimeout(poolAcquireTimeout)
+                .maxIdleTime(idleTimeout)
+                .maxLifeTime(connectionTtl)
+                .evictInBackground(idleTimeout)
+                .metrics(true)
+                .build();
+    }
+
+    @Bean
+    public WebClient keycloakWebClient(WebClient.Builder webClientBuilder,
+                                       ConnectionProvider keycloakConnectionProvider,
+                                       KeycloakAccessTokenProvider keycloakAccessTokenProvider) {
+        HttpClient httpClient = HttpClient.create(keycloakConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(readTimeout);
+        return webClientBuilder
+                .baseUrl(authUrl + "/admin/realms/" + realm)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .filter(bearerToken(keycloakAccessTokenProvider))
+                .build();
+    }
+
+    // Обычно токен уже обновлён в фоне; синхронное получение уводится с event loop
+    private static ExchangeFilterFunction bearerToken(KeycloakAccessTokenProvider tokenProvider) {
+        return (request, next) -> {
+            String token = tokenProvider.currentAccessToken();
+            Mono<String> accessToken = token != null
+                    ? Mono.just(token)
+                    : Mono.fromCallable(tokenProvider::getAccessToken).subscribeOn(Schedulers.boundedElastic());
+            return accessToken.flatMap(value -> next.exchange(ClientRequest.from(request)
+                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + value)
+                    .build()));
+        };
+    }
+}
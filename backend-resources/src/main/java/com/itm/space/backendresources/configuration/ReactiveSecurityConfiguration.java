@@ -0,0 +1,65 @@
+package com.itm.space.backendresources.configuration;
+
+import com.itm.space.backendresources.security.CachedJwkSource;
+import com.itm.space.backendresources.security.CachingReactiveJwtAuthenticationManager;
+import com.itm.space.backendresources.security.JwtAuthoritiesConverter;
+import com.itm.space.backendresources.security.VerifiedTokenCache;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtReactiveAuthenticationManager;
+import org.springframework.security.oauth2.server.resource.authentication.ReactiveJwtAuthenticationConverterAdapter;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Безопасность реактивного стека. Как и в сервлетном стеке, роль MODERATOR для {@code /api/users/**}
+ * проверяется в цепочке фильтров, а не через method security; открыты только swagger, actuator и
+ * {@code /error}, остальные пути запрещены. PathPattern сопоставляет раскодированные сегменты пути.
+ */
+@Configuration
+@EnableWebFluxSecurity
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveSecurityConfiguration {
+
+    @Bean
+    public ReactiveJwtDecoder reactiveJwtDecoder(CachedJwkSource cachedJwkSource,
+                                                 @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}")
+                                                 String issuerUri) {
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = cachedJwkSource.jwtProcessor();
+        // Ключи уже в памяти, так что проверка подписи не блокирует и выполняется прямо в event loop
+        NimbusReactiveJwtDecoder jwtDecoder = new NimbusReactiveJwtDecoder(
+                jwt -> Mono.fromCallable(() -> jwtProcessor.process(jwt, null)));
+        jwtDecoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(issuerUri));
+        return jwtDecoder;
+    }
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http,
+                                                         ReactiveJwtDecoder jwtDecoder,
+                                                         JwtAuthoritiesConverter jwtAuthoritiesConverter,
+                                                         VerifiedTokenCache verifiedTokenCache) {
+        JwtReactiveAuthenticationManager jwtAuthenticationManager = new JwtReactiveAuthenticationManager(jwtDecoder);
+        jwtAuthenticationManager.setJwtAuthenticationConverter(
+                new ReactiveJwtAuthenticationConverterAdapter(jwtAuthoritiesConverter));
+        http
+                .csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .authorizeExchange(exchanges -> exchanges
+                        .pathMatchers("/api/users", "/api/users/**").hasRole("MODERATOR")
+                        .pathMatchers("/swagger-ui.html", "/swagger-ui/**", "/v3/api-docs/**", "/actuator/**", "/error")
+                        .permitAll()
+                        .anyExchange().denyAll())
+                .oauth2ResourceServer(oauth2 -> oauth2
+                        .jwt(jwt -> jwt.authenticationManager(
+                                new CachingReactiveJwtAuthenticationManager(jwtAuthenticationManager, verifiedTokenCache))));
+        return http.build();
+    }
+}
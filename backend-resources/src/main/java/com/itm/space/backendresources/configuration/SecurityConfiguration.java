@@ -1,47 +1,73 @@
 package com.itm.space.backendresources.configuration;
 
+import com.itm.space.backendresources.security.CachedJwkSource;
+import com.itm.space.backendresources.security.CachingJwtAuthenticationManager;
+import com.itm.space.backendresources.security.JwtAuthoritiesConverter;
+import com.itm.space.backendresources.security.PathAuthorizationManager;
+import com.itm.space.backendresources.security.VerifiedTokenCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.oauth2.jwt.Jwt;
-import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
 import org.springframework.security.web.SecurityFilterChain;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-import java.util.Map;
-
 @Configuration
 @EnableWebSecurity
-@EnableMethodSecurity(securedEnabled = true)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class SecurityConfiguration {
+    private static final String MODERATOR = "ROLE_MODERATOR";
+
+    @Bean
+    public JwtDecoder jwtDecoder(CachedJwkSource cachedJwkSource,
+                                 @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}") String issuerUri) {
+        NimbusJwtDecoder jwtDecoder = new NimbusJwtDecoder(cachedJwkSource.jwtProcessor());
+        jwtDecoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(issuerUri));
+        return jwtDecoder;
+    }
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http,
+                                                   JwtDecoder jwtDecoder,
+                                                   JwtAuthoritiesConverter jwtAuthoritiesConverter,
+                                                   VerifiedTokenCache verifiedTokenCache) throws Exception {
+        JwtAuthenticationProvider jwtAuthenticationProvider = new JwtAuthenticationProvider(jwtDecoder);
+        jwtAuthenticationProvider.setJwtAuthenticationConverter(jwtAuthoritiesConverter);
         http
                 .csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(requests -> requests
-                        .anyRequest().permitAll())
+                        .anyRequest().access(userApiAuthorization()))
                 .oauth2ResourceServer()
                 .jwt()
-                .jwtAuthenticationConverter(SecurityConfiguration::convertJwtToken);
+                .authenticationManager(new CachingJwtAuthenticationManager(jwtAuthenticationProvider, verifiedTokenCache));
         return http.build();
     }
 
-    private static JwtAuthenticationToken convertJwtToken(Jwt jwt) {
-        Collection<GrantedAuthority> authorities = new ArrayList<>();
-        JwtAuthenticationToken authenticationToken = new JwtAuthenticationToken(jwt, authorities);
-        Map<String, Object> realmAccess = jwt.getClaimAsMap("realm_access");
-        List<String> roles = (List<String>) realmAccess.get("roles");
-        for (String role : roles) {
-            authorities.add(new SimpleGrantedAuthority("ROLE_" + role));
-        }
-        return new JwtAuthenticationToken(jwt, authorities, authenticationToken.getName());
+    // Всё под /api/users, в том числе неописанные маршруты, требует MODERATOR; swagger и actuator открыты,
+    // остальные пути запрещены
+    public static PathAuthorizationManager userApiAuthorization() {
+        return PathAuthorizationManager.builder()
+                .hasAuthority(HttpMethod.POST, "/api/users", MODERATOR)
+                .hasAuthority(HttpMethod.GET, "/api/users", MODERATOR)
+                .hasAuthority(HttpMethod.POST, "/api/users/bulk", MODERATOR)
+                .hasAuthority(HttpMethod.POST, "/api/users/batch", MODERATOR)
+                .hasAuthority(HttpMethod.POST, "/api/users/jobs", MODERATOR)
+                .hasAuthority(HttpMethod.GET, "/api/users/jobs/{id}", MODERATOR)
+                .hasAuthority(HttpMethod.GET, "/api/users/hello", MODERATOR)
+                .hasAuthority(HttpMethod.GET, "/api/users/{id}", MODERATOR)
+                .hasAuthority("/api/users/**", MODERATOR)
+                .permitAll("/swagger-ui.html")
+                .permitAll("/swagger-ui/**")
+                .permitAll("/v3/api-docs/**")
+                .permitAll("/actuator/**")
+                .permitAll("/error")
+                .build();
     }
 }
@@ -0,0 +1,22 @@
+package com.itm.space.backendresources.configuration;
+
+import com.itm.space.backendresources.util.VirtualThreads;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Режим виртуальных потоков: каждый HTTP-запрос Tomcat обрабатывается в собственном виртуальном потоке,
+ * поэтому ожидание Keycloak не занимает поток платформы и {@code server.tomcat.threads.max} больше не
+ * ограничивает число одновременных запросов. Нагрузку на Keycloak ограничивают {@code keycloak.bulkhead.*}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "server.virtual-threads", name = "enabled", havingValue = "true")
+public class VirtualThreadConfiguration {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(VirtualThreads.newThreadPerTaskExecutor("tomcat-vt-"));
+    }
+}
@@ -0,0 +1,88 @@
+package com.itm.space.backendresources.controller;
+
+import com.itm.space.backendresources.util.AdaptiveLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Адаптивный лимит одновременных запросов к {@code /api/users}. Стоит перед Spring Security, чтобы лишние
+ * запросы отклонялись с 429 ещё до разбора токена. Ответы 5xx и запросы дольше {@code latency-target}
+ * снижают лимит; 503 и 504 означают отказ защит Keycloak дальше по цепочке и в замер не попадают.
+ * Массовое создание, батч ({@code ?ids=} и {@code /batch}) и асинхронные задачи заведомо дольше одиночного
+ * запроса, поэтому под этот лимит не подпадают: их ограничивают собственные очереди и пулы.
+ */
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER - 10)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(prefix = "users.limiter", name = "enabled", havingValue = "true")
+public class AdaptiveConcurrencyLimitFilter extends OncePerRequestFilter {
+    private static final String USERS_PATH = "/api/users";
+
+    private final AdaptiveLimiter limiter;
+
+    public AdaptiveConcurrencyLimitFilter(MeterRegistry meterRegistry,
+                                          @Value("${users.limiter.initial-limit}") int initialLimit,
+                                          @Value("${users.limiter.min-limit}") int minLimit,
+                                          @Value("${users.limiter.max-limit}") int maxLimit,
+                                          @Value("${users.limiter.latency-target}") Duration latencyTarget) {
+        this.limiter = new AdaptiveLimiter("user-api",
+                new AdaptiveLimiter.Settings(initialLimit, minLimit, maxLimit, latencyTarget), meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // Путь уже без context path, раскодирован и без параметров после ';', как его сопоставляет Spring MVC
+        String path = UrlPathHelper.defaultInstance.getPathWithinApplication(request);
+        if (!path.equals(USERS_PATH) && !path.startsWith(USERS_PATH + "/")) {
+            return true;
+        }
+        return path.equals(USERS_PATH + "/bulk") || path.equals(USERS_PATH + "/batch")
+                || path.equals(USERS_PATH + "/jobs") || path.startsWith(USERS_PATH + "/jobs/")
+                || request.getParameter("ids") != null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        AdaptiveLimiter.Permit permit = limiter.tryAcquire();
+        if (permit == null) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.getWriter().write("Too many concurrent requests");
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+            int status = response.getStatus();
+            if (status == HttpStatus.SERVICE_UNAVAILABLE.value() || status == HttpStatus.GATEWAY_TIMEOUT.value()) {
+                permit.ignore();
+            } else if (status >= HttpStatus.INTERNAL_SERVER_ERROR.value()) {
+                permit.dropped();
+            } else {
+                permit.success();
+            }
+        } catch (IOException | ServletException | RuntimeException ex) {
+            permit.dropped();
+            throw ex;
+        } finally {
+            // Error и прочее непредусмотренное: разрешение возвращается без замера, повторный вызов ничего не делает
+            permit.ignore();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.itm.space.backendresources.controller;
+
+import com.itm.space.backendresources.api.request.UserBatchRequest;
+import com.itm.space.backendresources.api.request.UserInclude;
+import com.itm.space.backendresources.api.request.UserRequest;
+import com.itm.space.backendresources.api.response.UserBatchItemResponse;
+import com.itm.space.backendresources.api.response.UserCreatedResponse;
+import com.itm.space.backendresources.api.response.UserResponse;
+import com.itm.space.backendresources.service.ReactiveUserService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.security.Principal;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/users")
+@RequiredArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveUserController {
+    private final ReactiveUserService userService;
+
+    @PostMapping
+    public Mono<ResponseEntity<UserCreatedResponse>> create(@RequestBody @Valid UserRequest userRequest,
+                                                            UriComponentsBuilder uriBuilder) {
+        return userService.createUser(userRequest)
+                .map(id -> ResponseEntity.created(uriBuilder.path("/api/users/{id}").buildAndExpand(id).toUri())
+                        .body(new UserCreatedResponse(id)));
+    }
+
+    @GetMapping("/{id}")
+    public Mono<UserResponse> getUserById(@PathVariable UUID id,
+                                          @RequestParam(required = false) Set<String> include) {
+        if (include == null) {
+            return userService.getUserById(id);
+        }
+        return userService.getUserById(id, UserInclude.parse(include));
+    }
+
+    @GetMapping(params = "ids")
+    public Mono<List<UserBatchItemResponse>> getUsersByIds(@RequestParam List<UUID> ids) {
+        return userService.getUsersByIds(ids);
+    }
+
+    @PostMapping("/batch")
+    public Mono<List<UserBatchItemResponse>> getUsersByIds(@RequestBody @Valid UserBatchRequest userBatchRequest) {
+        return userService.getUsersByIds(userBatchRequest.getIds());
+    }
+
+    @GetMapping("/hello")
+    public Mono<String> hello(Mono<Principal> principal) {
+        return principal.map(Principal::getName);
+    }
+}
@@ -0,0 +1,59 @@
+package com.itm.space.backendresources.controller;
+
+import com.itm.space.backendresources.util.RequestDeadline;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Читает дедлайн запроса из заголовка {@code X-Request-Deadline} (epoch millis), который ставит гейтвей,
+ * и делает его доступным через {@link RequestDeadline}. Запрос с уже истёкшим дедлайном сразу завершается 504:
+ * клиент его больше не ждёт. Стоит раньше лимитера и Spring Security, чтобы такие запросы не занимали их ресурсы.
+ */
+@Slf4j
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER - 20)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class RequestDeadlineFilter extends OncePerRequestFilter {
+    public static final String DEADLINE_HEADER = "X-Request-Deadline";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String header = request.getHeader(DEADLINE_HEADER);
+        if (header == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        long remainingMillis;
+        try {
+            remainingMillis = Long.parseLong(header) - System.currentTimeMillis();
+        } catch (NumberFormatException ex) {
+            log.debug("Ignoring malformed {} header: {}", DEADLINE_HEADER, header);
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (remainingMillis <= 0) {
+            response.setStatus(HttpStatus.GATEWAY_TIMEOUT.value());
+            response.getWriter().write("Request deadline exceeded");
+            return;
+        }
+        RequestDeadline.set(Duration.ofMillis(remainingMillis));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestDeadline.clear();
+        }
+    }
+}
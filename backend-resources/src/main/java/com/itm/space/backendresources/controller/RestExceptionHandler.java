@@ -1,12 +1,15 @@
 package com.itm.space.backendresources.controller;
 
 import com.itm.space.backendresources.exception.BackendResourcesException;
+import com.itm.space.backendresources.exception.ServiceUnavailableException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.support.WebExchangeBindException;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -19,6 +22,14 @@ public class RestExceptionHandler {
         return new ResponseEntity<>(backendResourcesException.getMessage(), backendResourcesException.getHttpStatus());
     }
 
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<String> handleException(ServiceUnavailableException serviceUnavailableException) {
+        long retryAfterSeconds = Math.max(1, (serviceUnavailableException.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(serviceUnavailableException.getMessage());
+    }
+
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public Map<String, String> handleInvalidArgument(MethodArgumentNotValidException ex) {
@@ -28,4 +39,12 @@ public class RestExceptionHandler {
         return errorMap;
     }
 
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(WebExchangeBindException.class)
+    public Map<String, String> handleInvalidArgument(WebExchangeBindException ex) {
+        Map<String, String> errorMap = new HashMap<>();
+        ex.getFieldErrors().forEach(error -> errorMap.put(error.getField(), error.getDefaultMessage()));
+        return errorMap;
+    }
+
 }
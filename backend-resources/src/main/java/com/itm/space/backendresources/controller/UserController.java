@@ -1,46 +1,111 @@
 package com.itm.space.backendresources.controller;
 
+import com.itm.space.backendresources.api.request.UserBatchRequest;
+import com.itm.space.backendresources.api.request.UserBulkRequest;
+import com.itm.space.backendresources.api.request.UserInclude;
 import com.itm.space.backendresources.api.request.UserRequest;
+import com.itm.space.backendresources.api.response.UserBatchItemResponse;
+import com.itm.space.backendresources.api.response.UserBulkResultResponse;
+import com.itm.space.backendresources.api.response.UserCreatedResponse;
+import com.itm.space.backendresources.api.response.UserCreationJobResponse;
 import com.itm.space.backendresources.api.response.UserResponse;
+import com.itm.space.backendresources.service.IdempotentRequestStore;
+import com.itm.space.backendresources.service.UserCreationJobService;
 import com.itm.space.backendresources.service.UserService;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.access.annotation.Secured;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.security.Principal;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/users")
 @RequiredArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class UserController {
     private final UserService userService;
+    private final UserCreationJobService userCreationJobService;
+    private final IdempotentRequestStore idempotentRequestStore;
 
     @PostMapping
-    @Secured("ROLE_MODERATOR")
     @SecurityRequirement(name = "oauth2_auth_code")
-    public void create(@RequestBody @Valid UserRequest userRequest) {
-        userService.createUser(userRequest);
+    public ResponseEntity<UserCreatedResponse> create(@RequestBody @Valid UserRequest userRequest,
+                                                      @RequestHeader(name = "Idempotency-Key", required = false)
+                                                      String idempotencyKey) {
+        UUID id;
+        if (idempotencyKey == null) {
+            id = userService.createUser(userRequest);
+        } else {
+            String key = SecurityContextHolder.getContext().getAuthentication().getName() + ":" + idempotencyKey;
+            id = idempotentRequestStore.execute(key, userRequest, () -> userService.createUser(userRequest));
+        }
+        return ResponseEntity.created(ServletUriComponentsBuilder.fromCurrentRequest()
+                        .path("/{id}").buildAndExpand(id).toUri())
+                .body(new UserCreatedResponse(id));
+    }
+
+    @PostMapping("/bulk")
+    @SecurityRequirement(name = "oauth2_auth_code")
+    public List<UserBulkResultResponse> createUsers(@RequestBody @Valid UserBulkRequest userBulkRequest) {
+        return userService.createUsers(userBulkRequest.getUsers());
+    }
+
+    @PostMapping("/jobs")
+    @SecurityRequirement(name = "oauth2_auth_code")
+    public ResponseEntity<UserCreationJobResponse> createAsync(@RequestBody @Valid UserRequest userRequest) {
+        UserCreationJobResponse job = userCreationJobService.submit(userRequest);
+        return ResponseEntity.accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentRequest()
+                        .path("/{id}").buildAndExpand(job.getId()).toUri())
+                .body(job);
+    }
+
+    @GetMapping("/jobs/{id}")
+    @SecurityRequirement(name = "oauth2_auth_code")
+    public UserCreationJobResponse getJob(@PathVariable UUID id) {
+        return userCreationJobService.getJob(id);
     }
 
     @GetMapping("/{id}")
-    @Secured("ROLE_MODERATOR")
     @SecurityRequirement(name = "oauth2_auth_code")
-    public UserResponse getUserById(@PathVariable UUID id) {
-        return userService.getUserById(id);
+    public UserResponse getUserById(@PathVariable UUID id,
+                                    @RequestParam(required = false) Set<String> include) {
+        if (include == null) {
+            return userService.getUserById(id);
+        }
+        return userService.getUserById(id, UserInclude.parse(include));
+    }
+
+    @GetMapping(params = "ids")
+    @SecurityRequirement(name = "oauth2_auth_code")
+    public List<UserBatchItemResponse> getUsersByIds(@RequestParam List<UUID> ids) {
+        return userService.getUsersByIds(ids);
+    }
+
+    // Тот же батч в теле запроса: 500 id в query string не проходят лимиты на длину строки запроса
+    @PostMapping("/batch")
+    @SecurityRequirement(name = "oauth2_auth_code")
+    public List<UserBatchItemResponse> getUsersByIds(@RequestBody @Valid UserBatchRequest userBatchRequest) {
+        return userService.getUsersByIds(userBatchRequest.getIds());
     }
 
     @GetMapping("/hello")
-    @Secured("ROLE_MODERATOR")
     @SecurityRequirement(name = "oauth2_auth_code")
     public String hello() {
         return SecurityContextHolder.getContext().getAuthentication().getName();
@@ -0,0 +1,21 @@
+package com.itm.space.backendresources.keycloak;
+
+import lombok.RequiredArgsConstructor;
+
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.core.HttpHeaders;
+
+/**
+ * Проставляет в запросы admin-клиента токен из {@link KeycloakAccessTokenProvider}.
+ * Регистрируется с приоритетом ниже стандартного фильтра Keycloak и перезаписывает его заголовок.
+ */
+@RequiredArgsConstructor
+public class BearerTokenFilter implements ClientRequestFilter {
+    private final KeycloakAccessTokenProvider tokenProvider;
+
+    @Override
+    public void filter(ClientRequestContext requestContext) {
+        requestContext.getHeaders().putSingle(HttpHeaders.AUTHORIZATION, "Bearer " + tokenProvider.getAccessToken());
+    }
+}
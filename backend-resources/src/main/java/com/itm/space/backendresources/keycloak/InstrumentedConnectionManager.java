@@ -0,0 +1,70 @@
+package com.itm.space.backendresources.keycloak;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пул соединений к Keycloak, публикующий заполненность пула и время ожидания свободного соединения.
+ */
+public class InstrumentedConnectionManager extends PoolingHttpClientConnectionManager {
+    private final Timer acquireTimer;
+    private final Counter acquireTimeouts;
+
+    public InstrumentedConnectionManager(Duration connectionTtl, MeterRegistry meterRegistry) {
+        super(connectionTtl.toMillis(), TimeUnit.MILLISECONDS);
+        this.acquireTimer = Timer.builder("keycloak.http.pool.acquire")
+                .description("Time spent waiting for a pooled Keycloak connection")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.acquireTimeouts = Counter.builder("keycloak.http.pool.acquire.timeouts")
+                .description("Requests that gave up waiting for a pooled Keycloak connection")
+                .register(meterRegistry);
+        Gauge.builder("keycloak.http.pool.connections", this, manager -> manager.getTotalStats().getLeased())
+                .tag("state", "leased")
+                .register(meterRegistry);
+        Gauge.builder("keycloak.http.pool.connections", this, manager -> manager.getTotalStats().getAvailable())
+                .tag("state", "idle")
+                .register(meterRegistry);
+        Gauge.builder("keycloak.http.pool.connections", this, manager -> manager.getTotalStats().getPending())
+                .tag("state", "pending")
+                .register(meterRegistry);
+        Gauge.builder("keycloak.http.pool.max", this, manager -> manager.getTotalStats().getMax())
+                .register(meterRegistry);
+    }
+
+    @Override
+    public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+        ConnectionRequest request = super.requestConnection(route, state);
+        return new ConnectionRequest() {
+            @Override
+            public HttpClientConnection get(long timeout, TimeUnit unit)
+                    throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                long start = System.nanoTime();
+                try {
+                    return request.get(timeout, unit);
+                } catch (ConnectionPoolTimeoutException ex) {
+                    acquireTimeouts.increment();
+                    throw ex;
+                } finally {
+                    acquireTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }
+
+            @Override
+            public boolean cancel() {
+                return request.cancel();
+            }
+        };
+    }
+}
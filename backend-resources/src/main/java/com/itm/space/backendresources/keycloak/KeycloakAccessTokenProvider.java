@@ -0,0 +1,137 @@
+package com.itm.space.backendresources.keycloak;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.token.TokenManager;
+import org.keycloak.representations.AccessTokenResponse;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Держит актуальный сервисный access token для admin-клиента Keycloak.
+ * Токен обновляется заранее, по расписанию, на доле {@code refresh-fraction} его времени жизни
+ * со случайным разбросом, поэтому запросы пользователей читают готовый токен и не ждут его получения.
+ * Синхронное получение происходит только при холодном старте или если фоновое обновление
+ * не удавалось до истечения токена.
+ * <p>
+ * Провайдер владеет отдельным клиентом Keycloak, через который получает токены, и закрывает его в {@link #close()}.
+ */
+@Slf4j
+public class KeycloakAccessTokenProvider implements AutoCloseable {
+    private final Keycloak tokenClient;
+    private final TokenManager tokenManager;
+    private final double refreshFraction;
+    private final double refreshJitter;
+    private final Duration retryDelay;
+    private final ScheduledExecutorService scheduler;
+    private final Timer refreshTimer;
+    private final Counter refreshFailures;
+    // Не synchronized: виртуальный поток, ждущий монитор во время HTTP-запроса, блокирует поток-носитель
+    private final ReentrantLock fetchLock = new ReentrantLock();
+
+    private volatile String accessToken;
+    private volatile long expiresAtNanos;
+
+    public KeycloakAccessTokenProvider(Keycloak tokenClient, double refreshFraction, double refreshJitter,
+                                       Duration retryDelay, MeterRegistry meterRegistry) {
+        this.tokenClient = tokenClient;
+        this.tokenManager = tokenClient.tokenManager();
+        this.refreshFraction = refreshFraction;
+        this.refreshJitter = refreshJitter;
+        this.retryDelay = retryDelay;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("keycloak-token-"));
+        this.refreshTimer = Timer.builder("keycloak.token.refresh")
+                .description("Latency of fetching the Keycloak service account token")
+                .register(meterRegistry);
+        this.refreshFailures = Counter.builder("keycloak.token.refresh.failures")
+                .description("Failed attempts to fetch the Keycloak service account token")
+                .register(meterRegistry);
+        Gauge.builder("keycloak.token.remaining", this, KeycloakAccessTokenProvider::remainingSeconds)
+                .description("Seconds until the current Keycloak service account token expires")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    public void start() {
+        scheduler.execute(this::refresh);
+    }
+
+    public String getAccessToken() {
+        String token = currentAccessToken();
+        return token != null ? token : fetchIfExpired();
+    }
+
+    /**
+     * Токен без ожидания: {@code null}, если действующего токена пока нет и его нужно получить синхронно.
+     */
+    public String currentAccessToken() {
+        String token = accessToken;
+        return token != null && System.nanoTime() < expiresAtNanos ? token : null;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        tokenClient.close();
+    }
+
+    private void refresh() {
+        long delayMillis;
+        try {
+            long lifetimeMillis = TimeUnit.SECONDS.toMillis(fetch().getExpiresIn());
+            long jitterMillis = (long) (lifetimeMillis * refreshJitter);
+            delayMillis = (long) (lifetimeMillis * refreshFraction)
+                    + ThreadLocalRandom.current().nextLong(-jitterMillis, jitterMillis + 1);
+            delayMillis = Math.max(delayMillis, retryDelay.toMillis());
+        } catch (RuntimeException ex) {
+            log.warn("Could not refresh Keycloak service account token, retrying in {}", retryDelay, ex);
+            delayMillis = retryDelay.toMillis();
+        }
+        if (!scheduler.isShutdown()) {
+            scheduler.schedule(this::refresh, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private String fetchIfExpired() {
+        fetchLock.lock();
+        try {
+            if (accessToken == null || System.nanoTime() >= expiresAtNanos) {
+                fetch();
+            }
+            return accessToken;
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    private AccessTokenResponse fetch() {
+        long start = System.nanoTime();
+        fetchLock.lock();
+        try {
+            AccessTokenResponse response = tokenManager.grantToken();
+            accessToken = response.getToken();
+            expiresAtNanos = start + TimeUnit.SECONDS.toNanos(response.getExpiresIn());
+            return response;
+        } catch (RuntimeException ex) {
+            refreshFailures.increment();
+            throw ex;
+        } finally {
+            fetchLock.unlock();
+            refreshTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private double remainingSeconds() {
+        return accessToken == null ? 0 : Math.max(0, (expiresAtNanos - System.nanoTime()) / 1e9);
+    }
+}
@@ -0,0 +1,172 @@
+package com.itm.space.backendresources.keycloak;
+
+import com.itm.space.backendresources.exception.BackendResourcesException;
+import com.itm.space.backendresources.exception.ServiceUnavailableException;
+import com.itm.space.backendresources.util.AdaptiveLimiter;
+import com.itm.space.backendresources.util.Bulkhead;
+import com.itm.space.backendresources.util.CallNotPermittedException;
+import com.itm.space.backendresources.util.CircuitBreaker;
+import com.itm.space.backendresources.util.DeadlineExceededException;
+import com.itm.space.backendresources.util.RequestDeadline;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import javax.ws.rs.WebApplicationException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Защита вызовов admin API Keycloak. Если дедлайн запроса ({@link RequestDeadline}) уже прошёл,
+ * вызов не начинается и завершается 504. Иначе вызов проходит, по порядку:
+ * <ul>
+ *     <li>{@link CircuitBreaker} своей операции - пока он разомкнут, вызов сразу завершается
+ *     {@link ServiceUnavailableException} с временем, через которое стоит повторить запрос;</li>
+ *     <li>{@link Bulkhead} чтения или записи - жёсткий предел, благодаря которому медленное создание
+ *     пользователей (хеширование паролей на стороне Keycloak) не занимает соединения, нужные чтению.
+ *     Сверх {@code max-concurrent} вызовы ждут в очереди до {@code max-wait}, а при полной очереди
+ *     или по таймауту отклоняются с 503 - это первый уровень отказа;</li>
+ *     <li>{@link AdaptiveLimiter} чтения или записи - лимит внутри bulkhead'а подстраивается под задержки
+ *     самого Keycloak (без ожидания в очереди) и не выше {@code max-concurrent}. Когда Keycloak замедляется,
+ *     лимит опускается ниже bulkhead'а, и допущенные им вызовы сверх лимита отклоняются с 503 - второй уровень.</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequiredArgsConstructor
+public class KeycloakCallGuard {
+    private final MeterRegistry meterRegistry;
+    private final Map<KeycloakOperation, CircuitBreaker> circuitBreakers = new EnumMap<>(KeycloakOperation.class);
+    private Bulkhead readBulkhead;
+    private Bulkhead writeBulkhead;
+    private AdaptiveLimiter readLimiter;
+    private AdaptiveLimiter writeLimiter;
+
+    @Value("${keycloak.client.pool-size}")
+    private int connectionPoolSize;
+    @Value("${keycloak.bulkhead.read.max-concurrent}")
+    private int readMaxConcurrent;
+    @Value("${keycloak.bulkhead.read.max-queue}")
+    private int readMaxQueue;
+    @Value("${keycloak.bulkhead.read.max-wait}")
+    private Duration readMaxWait;
+    @Value("${keycloak.bulkhead.write.max-concurrent}")
+    private int writeMaxConcurrent;
+    @Value("${keycloak.bulkhead.write.max-queue}")
+    private int writeMaxQueue;
+    @Value("${keycloak.bulkhead.write.max-wait}")
+    private Duration writeMaxWait;
+    @Value("${keycloak.limiter.read.initial-limit}")
+    private int readInitialLimit;
+    @Value("${keycloak.limiter.read.min-limit}")
+    private int readMinLimit;
+    @Value("${keycloak.limiter.read.latency-target}")
+    private Duration readLatencyTarget;
+    @Value("${keycloak.limiter.write.initial-limit}")
+    private int writeInitialLimit;
+    @Value("${keycloak.limiter.write.min-limit}")
+    private int writeMinLimit;
+    @Value("${keycloak.limiter.write.latency-target}")
+    private Duration writeLatencyTarget;
+    @Value("${keycloak.circuit-breaker.window-size}")
+    private int windowSize;
+    @Value("${keycloak.circuit-breaker.minimum-calls}")
+    private int minimumCalls;
+    @Value("${keycloak.circuit-breaker.failure-rate-threshold}")
+    private int failureRateThreshold;
+    @Value("${keycloak.circuit-breaker.slow-call-rate-threshold}")
+    private int slowCallRateThreshold;
+    @Value("${keycloak.circuit-breaker.slow-call-duration.read}")
+    private Duration slowReadDuration;
+    @Value("${keycloak.circuit-breaker.slow-call-duration.write}")
+    private Duration slowWriteDuration;
+    @Value("${keycloak.circuit-breaker.wait-in-open}")
+    private Duration waitInOpen;
+    @Value("${keycloak.circuit-breaker.half-open-calls}")
+    private int halfOpenCalls;
+
+    @PostConstruct
+    public void init() {
+        readBulkhead = new Bulkhead("keycloak-read", readMaxConcurrent, readMaxQueue, readMaxWait, meterRegistry);
+        writeBulkhead = new Bulkhead("keycloak-write", writeMaxConcurrent, writeMaxQueue, writeMaxWait,
+                meterRegistry);
+        // Каждый вызов держит одно соединение, так что лимиты bulkhead'ов и есть квоты пула
+        if (readMaxConcurrent + writeMaxConcurrent > connectionPoolSize) {
+            log.warn("Keycloak bulkheads allow {} concurrent calls but the connection pool has {}; "
+                            + "reads and writes will compete for connections",
+                    readMaxConcurrent + writeMaxConcurrent, connectionPoolSize);
+        }
+        // Адаптивный лимит не имеет смысла поднимать выше bulkhead'а
+        readLimiter = new AdaptiveLimiter("keycloak-read", new AdaptiveLimiter.Settings(
+                readInitialLimit, readMinLimit, readMaxConcurrent, readLatencyTarget), meterRegistry);
+        writeLimiter = new AdaptiveLimiter("keycloak-write", new AdaptiveLimiter.Settings(
+                writeInitialLimit, writeMinLimit, writeMaxConcurrent, writeLatencyTarget), meterRegistry);
+        for (KeycloakOperation operation : KeycloakOperation.values()) {
+            CircuitBreaker.Settings settings = new CircuitBreaker.Settings(windowSize, minimumCalls,
+                    failureRateThreshold, slowCallRateThreshold,
+                    operation.isWrite() ? slowWriteDuration : slowReadDuration, waitInOpen, halfOpenCalls);
+            circuitBreakers.put(operation, new CircuitBreaker("keycloak-" + operation.getTag(), settings,
+                    KeycloakCallGuard::classify, meterRegistry));
+        }
+    }
+
+    public <T> T call(KeycloakOperation operation, Supplier<T> call) {
+        AdaptiveLimiter limiter = operation.isWrite() ? writeLimiter : readLimiter;
+        Bulkhead bulkhead = operation.isWrite() ? writeBulkhead : readBulkhead;
+        try {
+            RequestDeadline.checkNotExpired();
+            return circuitBreakers.get(operation).execute(() -> bulkhead.execute(() -> limited(limiter, call)));
+        } catch (DeadlineExceededException ex) {
+            throw new BackendResourcesException(ex.getMessage(), HttpStatus.GATEWAY_TIMEOUT);
+        } catch (CallNotPermittedException ex) {
+            throw new ServiceUnavailableException(ex.getMessage(), ex.getRetryAfter());
+        } catch (RejectedExecutionException ex) {
+            throw new BackendResourcesException(ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    private static <T> T limited(AdaptiveLimiter limiter, Supplier<T> call) {
+        AdaptiveLimiter.Permit permit = limiter.tryAcquire();
+        if (permit == null) {
+            throw new RejectedExecutionException("Keycloak concurrency limit of " + limiter.getLimit() + " reached");
+        }
+        try {
+            T result = call.get();
+            permit.success();
+            return result;
+        } catch (RuntimeException ex) {
+            switch (classify(ex)) {
+                case SUCCESS -> permit.success();
+                case FAILURE -> permit.dropped();
+                case IGNORED -> permit.ignore();
+            }
+            throw ex;
+        } finally {
+            // Error и прочее непредусмотренное: разрешение возвращается без замера, повторный вызов ничего не делает
+            permit.ignore();
+        }
+    }
+
+    // Ответы 4xx означают, что Keycloak работает, а отказ bulkhead'а или лимитера - что перегружены мы сами.
+    // Прерванная попытка (проигравшая копия хеджирования) о состоянии Keycloak тоже ничего не говорит
+    private static CircuitBreaker.Outcome classify(Throwable ex) {
+        if (ex instanceof RejectedExecutionException || ex instanceof DeadlineExceededException
+                || Thread.currentThread().isInterrupted()) {
+            return CircuitBreaker.Outcome.IGNORED;
+        }
+        if (ex instanceof WebApplicationException webApplicationException
+                && webApplicationException.getResponse().getStatus() < 500) {
+            return CircuitBreaker.Outcome.SUCCESS;
+        }
+        return CircuitBreaker.Outcome.FAILURE;
+    }
+}
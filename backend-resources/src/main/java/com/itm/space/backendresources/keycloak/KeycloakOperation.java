@@ -0,0 +1,20 @@
+package com.itm.space.backendresources.keycloak;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public enum KeycloakOperation {
+    GET_USER("get-user", false),
+    GET_USER_ROLES("get-user-roles", false),
+    GET_USER_GROUPS("get-user-groups", false),
+    LIST_REALM_ROLES("list-realm-roles", false),
+    GET_ROLE_COMPOSITES("get-role-composites", false),
+    LIST_GROUPS("list-groups", false),
+    CREATE_USER("create-user", true),
+    PARTIAL_IMPORT("partial-import", true);
+
+    private final String tag;
+    private final boolean write;
+}
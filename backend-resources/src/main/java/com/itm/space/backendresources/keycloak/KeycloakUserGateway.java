@@ -0,0 +1,210 @@
+package com.itm.space.backendresources.keycloak;
+
+import com.itm.space.backendresources.role.RealmRoleSource;
+import com.itm.space.backendresources.util.Hedger;
+import com.itm.space.backendresources.util.RequestDeadline;
+import com.itm.space.backendresources.util.VirtualThreads;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import jakarta.annotation.PreDestroy;
+import org.keycloak.admin.client.CreatedResponseUtil;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.resource.RealmResource;
+import org.keycloak.admin.client.resource.UsersResource;
+import org.keycloak.partialimport.PartialImportResults;
+import org.keycloak.representations.idm.GroupRepresentation;
+import org.keycloak.representations.idm.PartialImportRepresentation;
+import org.keycloak.representations.idm.RoleRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.DoubleStream;
+
+/**
+ * Единая точка обращения к admin API Keycloak для операций над пользователями и чтения ролей и групп реалма.
+ * Прокси реалма и ресурса пользователей создаются один раз; каждый вызов проходит через
+ * {@link KeycloakCallGuard} и замеряется таймером {@code keycloak.admin.calls} с тегами operation и outcome.
+ * Чтения можно хеджировать ({@code keycloak.hedging.enabled}): копия запроса уходит, если ответа нет дольше
+ * {@code keycloak.hedging.percentile} собственных задержек операции. Исходная попытка тоже уходит в пул
+ * хеджирования, поэтому хеджированное чтение держит два потока: ожидающий поток {@code keycloakExecutor}
+ * и поток пула {@code keycloak.hedging.pool-size}, а с копией - три.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class KeycloakUserGateway implements RealmRoleSource {
+    private final RealmResource realmResource;
+    private final UsersResource usersResource;
+    private final KeycloakCallGuard keycloakCallGuard;
+    private final Map<KeycloakOperation, Timer> successTimers = new EnumMap<>(KeycloakOperation.class);
+    private final Map<KeycloakOperation, Timer> errorTimers = new EnumMap<>(KeycloakOperation.class);
+    private final Map<KeycloakOperation, HedgingDelay> hedgingDelays = new EnumMap<>(KeycloakOperation.class);
+    private final ExecutorService hedgingExecutor;
+    private final Hedger hedger;
+    private final double hedgingPercentile;
+    private final Duration hedgingMinDelay;
+
+    public KeycloakUserGateway(Keycloak keycloakClient,
+                               @Value("${keycloak.realm}") String realm,
+                               KeycloakCallGuard keycloakCallGuard,
+                               MeterRegistry meterRegistry,
+                               @Value("${keycloak.hedging.enabled}") boolean hedgingEnabled,
+                               @Value("${keycloak.hedging.percentile}") double hedgingPercentile,
+                               @Value("${keycloak.hedging.min-delay}") Duration hedgingMinDelay,
+                               @Value("${keycloak.hedging.budget-percent}") double hedgingBudgetPercent,
+                               @Value("${keycloak.hedging.pool-size}") int hedgingPoolSize,
+                               @Value("${server.virtual-threads.enabled:false}") boolean virtualThreads) {
+        this.realmResource = keycloakClient.realm(realm);
+        this.usersResource = realmResource.users();
+        this.keycloakCallGuard = keycloakCallGuard;
+        this.hedgingPercentile = hedgingPercentile;
+        this.hedgingMinDelay = hedgingMinDelay;
+        double[] percentiles = DoubleStream.of(0.5, 0.95, 0.99, hedgingPercentile).distinct().toArray();
+        for (KeycloakOperation operation : KeycloakOperation.values()) {
+            successTimers.put(operation, timer(meterRegistry, operation, "success", percentiles));
+            errorTimers.put(operation, timer(meterRegistry, operation, "error", percentiles));
+            hedgingDelays.put(operation, new HedgingDelay());
+        }
+        if (!hedgingEnabled) {
+            this.hedgingExecutor = null;
+            this.hedger = null;
+        } else {
+            // Без очереди: если свободного потока нет, вызов выполняется без хеджирования
+            this.hedgingExecutor = virtualThreads
+                    ? VirtualThreads.newThreadPerTaskExecutor("keycloak-hedge-vt-")
+                    : new ThreadPoolExecutor(hedgingPoolSize, hedgingPoolSize, 0L, TimeUnit.MILLISECONDS,
+                    new SynchronousQueue<>(), new CustomizableThreadFactory("keycloak-hedge-"));
+            this.hedger = new Hedger("keycloak-read", hedgingExecutor, hedgingBudgetPercent, meterRegistry);
+        }
+    }
+
+    public UserRepresentation getUser(UUID id) {
+        return hedgedCall(KeycloakOperation.GET_USER, () -> usersResource.get(id.toString()).toRepresentation());
+    }
+
+    public List<RoleRepresentation> getUserRealmRoles(UUID id) {
+        return hedgedCall(KeycloakOperation.GET_USER_ROLES,
+                () -> usersResource.get(id.toString()).roles().realmLevel().listAll());
+    }
+
+    public List<GroupRepresentation> getUserGroups(UUID id) {
+        return hedgedCall(KeycloakOperation.GET_USER_GROUPS, () -> usersResource.get(id.toString()).groups());
+    }
+
+    @Override
+    public List<RoleRepresentation> listRealmRoles() {
+        return call(KeycloakOperation.LIST_REALM_ROLES, () -> realmResource.roles().list(false));
+    }
+
+    @Override
+    public Set<RoleRepresentation> getRealmRoleComposites(String roleName) {
+        return call(KeycloakOperation.GET_ROLE_COMPOSITES,
+                () -> realmResource.roles().get(roleName).getRealmRoleComposites());
+    }
+
+    @Override
+    public List<GroupRepresentation> listGroups() {
+        return call(KeycloakOperation.LIST_GROUPS, () -> realmResource.groups().groups(null, null, null, false));
+    }
+
+    public String createUser(UserRepresentation user) {
+        return call(KeycloakOperation.CREATE_USER, () -> {
+            try (Response response = usersResource.create(user)) {
+                return CreatedResponseUtil.getCreatedId(response);
+            }
+        });
+    }
+
+    public PartialImportResults partialImport(PartialImportRepresentation partialImport) {
+        return call(KeycloakOperation.PARTIAL_IMPORT, () -> {
+            try (Response response = realmResource.partialImport(partialImport)) {
+                if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
+                    throw new WebApplicationException("Partial import failed with status " + response.getStatus(),
+                            response.getStatus());
+                }
+                return response.readEntity(PartialImportResults.class);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (hedgingExecutor != null) {
+            hedgingExecutor.shutdownNow();
+        }
+    }
+
+    private <T> T call(KeycloakOperation operation, Supplier<T> call) {
+        return keycloakCallGuard.call(operation, () -> timed(operation, call));
+    }
+
+    // Каждая попытка проходит через KeycloakCallGuard отдельно, поэтому копии тоже ограничены лимитами
+    private <T> T hedgedCall(KeycloakOperation operation, Supplier<T> call) {
+        if (hedger == null) {
+            return call(operation, call);
+        }
+        return hedger.execute(RequestDeadline.propagateSupplier(() -> call(operation, call)), hedgingDelay(operation));
+    }
+
+    private Duration hedgingDelay(KeycloakOperation operation) {
+        HedgingDelay delay = hedgingDelays.get(operation);
+        long now = System.nanoTime();
+        if (now - delay.computedAtNanos > HedgingDelay.TTL_NANOS) {
+            long percentileNanos = 0;
+            for (ValueAtPercentile value : successTimers.get(operation).takeSnapshot().percentileValues()) {
+                if (value.percentile() == hedgingPercentile) {
+                    percentileNanos = (long) value.value(TimeUnit.NANOSECONDS);
+                }
+            }
+            delay.delay = Duration.ofNanos(Math.max(percentileNanos, hedgingMinDelay.toNanos()));
+            delay.computedAtNanos = now;
+        }
+        return delay.delay;
+    }
+
+    private <T> T timed(KeycloakOperation operation, Supplier<T> call) {
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            successTimers.get(operation).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (RuntimeException ex) {
+            errorTimers.get(operation).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw ex;
+        }
+    }
+
+    private static Timer timer(MeterRegistry meterRegistry, KeycloakOperation operation, String outcome,
+                               double[] percentiles) {
+        return Timer.builder("keycloak.admin.calls")
+                .description("Latency of Keycloak admin API calls")
+                .tag("operation", operation.getTag())
+                .tag("outcome", outcome)
+                .publishPercentiles(percentiles)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    // Снимок перцентилей пересчитывается не чаще раза в секунду, а не на каждый вызов
+    private static final class HedgingDelay {
+        private static final long TTL_NANOS = TimeUnit.SECONDS.toNanos(1);
+        private volatile Duration delay;
+        private volatile long computedAtNanos = System.nanoTime() - TTL_NANOS - 1;
+    }
+}
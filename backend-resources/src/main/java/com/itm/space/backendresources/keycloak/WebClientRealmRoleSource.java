@@ -0,0 +1,65 @@
+package com.itm.space.backendresources.keycloak;
+
+import com.itm.space.backendresources.role.RealmRoleSource;
+import org.keycloak.representations.idm.GroupRepresentation;
+import org.keycloak.representations.idm.RoleRepresentation;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Источник ролей для {@link com.itm.space.backendresources.role.RealmRoleGraph} в профиле {@code reactive}:
+ * те же запросы admin API, что и у {@link KeycloakUserGateway}, но через неблокирующий клиент,
+ * чтобы реактивный стек не поднимал RESTEasy-клиент и его пулы. Ответ ждёт фоновый поток графа, не event loop.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class WebClientRealmRoleSource implements RealmRoleSource {
+    private static final ParameterizedTypeReference<List<RoleRepresentation>> ROLE_LIST =
+            new ParameterizedTypeReference<>() {
+            };
+    private static final ParameterizedTypeReference<List<GroupRepresentation>> GROUP_LIST =
+            new ParameterizedTypeReference<>() {
+            };
+
+    private final WebClient keycloakWebClient;
+    private final Duration readTimeout;
+
+    public WebClientRealmRoleSource(@Qualifier("keycloakWebClient") WebClient keycloakWebClient,
+                                    @Value("${keycloak.client.read-timeout}") Duration readTimeout) {
+        this.keycloakWebClient = keycloakWebClient;
+        this.readTimeout = readTimeout;
+    }
+
+    @Override
+    public List<RoleRepresentation> listRealmRoles() {
+        return keycloakWebClient.get().uri("/roles?briefRepresentation=false")
+                .retrieve()
+                .bodyToMono(ROLE_LIST)
+                .block(readTimeout);
+    }
+
+    @Override
+    public Set<RoleRepresentation> getRealmRoleComposites(String roleName) {
+        List<RoleRepresentation> composites = keycloakWebClient.get().uri("/roles/{name}/composites/realm", roleName)
+                .retrieve()
+                .bodyToMono(ROLE_LIST)
+                .block(readTimeout);
+        return composites != null ? Set.copyOf(composites) : Set.of();
+    }
+
+    @Override
+    public List<GroupRepresentation> listGroups() {
+        return keycloakWebClient.get().uri("/groups?briefRepresentation=false")
+                .retrieve()
+                .bodyToMono(GROUP_LIST)
+                .block(readTimeout);
+    }
+}
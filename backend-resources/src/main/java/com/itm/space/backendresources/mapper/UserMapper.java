@@ -1,6 +1,8 @@
 package com.itm.space.backendresources.mapper;
 
+import com.itm.space.backendresources.api.request.UserRequest;
 import com.itm.space.backendresources.api.response.UserResponse;
+import org.keycloak.representations.idm.CredentialRepresentation;
 import org.keycloak.representations.idm.GroupRepresentation;
 import org.keycloak.representations.idm.RoleRepresentation;
 import org.keycloak.representations.idm.UserRepresentation;
@@ -17,17 +19,39 @@ public interface UserMapper {
 
     @Mapping(target = "roles", source = "roleList", qualifiedByName = "mapRoleRepresentationToString")
     @Mapping(target = "groups", source = "groupList", qualifiedByName = "mapGroupRepresentationToString")
+    @Mapping(target = "effectiveRoles", ignore = true)
     UserResponse userRepresentationToUserResponse(UserRepresentation userRepresentation,
                                                   List<RoleRepresentation> roleList,
                                                   List<GroupRepresentation> groupList);
 
+    default UserRepresentation userRequestToUserRepresentation(UserRequest userRequest) {
+        CredentialRepresentation credentialRepresentation = new CredentialRepresentation();
+        credentialRepresentation.setTemporary(false);
+        credentialRepresentation.setType(CredentialRepresentation.PASSWORD);
+        credentialRepresentation.setValue(userRequest.getPassword());
+        UserRepresentation newUser = new UserRepresentation();
+        newUser.setUsername(userRequest.getUsername());
+        newUser.setEmail(userRequest.getEmail());
+        newUser.setCredentials(List.of(credentialRepresentation));
+        newUser.setEnabled(true);
+        newUser.setFirstName(userRequest.getFirstName());
+        newUser.setLastName(userRequest.getLastName());
+        return newUser;
+    }
+
     @Named("mapRoleRepresentationToString")
     default List<String> mapRoleRepresentationToString(List<RoleRepresentation> roleList) {
+        if (roleList == null) {
+            return null;
+        }
         return roleList.stream().map(RoleRepresentation::getName).toList();
     }
 
     @Named("mapGroupRepresentationToString")
     default List<String> mapGroupRepresentationToString(List<GroupRepresentation> groupList) {
+        if (groupList == null) {
+            return null;
+        }
         return groupList.stream().map(GroupRepresentation::getName).toList();
     }
 
@@ -0,0 +1,8 @@
+package com.itm.space.backendresources.outbox;
+
+import com.itm.space.backendresources.api.request.UserRequest;
+
+import java.util.UUID;
+
+public record JournaledUserCreation(UUID jobId, UserRequest request) {
+}
@@ -0,0 +1,410 @@
+package com.itm.space.backendresources.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itm.space.backendresources.api.request.UserRequest;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал (outbox) заявок на создание пользователей на локальном диске.
+ * <p>
+ * Записи дописываются в memory-mapped сегменты фиксированного размера. Запись CREATE считается
+ * принятой только после msync её сегмента; msync выполняет отдельный поток, объединяя в один
+ * вызов все записи, накопившиеся за {@code max-commit-delay} (group commit).
+ * Запись DONE отмечает заявку обработанной; сегмент удаляется, когда в нём не осталось
+ * необработанных заявок. При старте сегменты сканируются, а необработанные заявки
+ * один раз отдаются через {@link #takePendingEntries()} для повторной отправки.
+ * Каталог журнала блокируется файлом {@code .lock}: второй процесс с тем же каталогом не стартует.
+ * <p>
+ * Формат записи: [int длина записи][byte тип][long msb id][long lsb id][payload][int crc32].
+ * Нулевая длина означает конец сегмента; запись с неверной CRC считается оборванной.
+ * Payload содержит пароль в открытом виде, поэтому файлы создаются с правами только для владельца.
+ */
+@Slf4j
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(prefix = "users.outbox", name = "enabled", havingValue = "true")
+public class UserCreationJournal {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String LOCK_FILE = ".lock";
+    private static final byte CREATE = 1;
+    private static final byte DONE = 2;
+    private static final int HEADER_SIZE = Integer.BYTES + Byte.BYTES + 2 * Long.BYTES;
+    private static final int TRAILER_SIZE = Integer.BYTES;
+    private static final byte[] NO_PAYLOAD = new byte[0];
+
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final int segmentSize;
+    private final Duration maxCommitDelay;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition written = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final Map<UUID, Segment> pendingJobs = new HashMap<>();
+    private Segment active;
+    private long appendedSequence;
+    private long durableSequence;
+    private volatile boolean running;
+    private Thread flusher;
+    private FileChannel lockChannel;
+    private List<JournaledUserCreation> recovered = List.of();
+
+    public UserCreationJournal(ObjectMapper objectMapper,
+                               @Value("${users.outbox.directory}") Path directory,
+                               @Value("${users.outbox.segment-size}") int segmentSize,
+                               @Value("${users.outbox.max-commit-delay}") Duration maxCommitDelay) {
+        this.objectMapper = objectMapper;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxCommitDelay = maxCommitDelay;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        lockDirectory();
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX)).toList();
+        }
+        Map<UUID, JournaledUserCreation> pending = new LinkedHashMap<>();
+        for (Path file : files) {
+            Segment segment = Segment.map(file, segmentId(file), segmentSize, false);
+            segments.put(segment.id, segment);
+        }
+        for (Segment segment : segments.values()) {
+            scan(segment, pending);
+        }
+        active = segments.isEmpty() ? createSegment(0) : segments.lastEntry().getValue();
+        for (Segment segment : List.copyOf(segments.values())) {
+            deleteIfCompleted(segment);
+        }
+        recovered = List.copyOf(pending.values());
+        log.info("Outbox opened at {}: {} segment(s), {} pending creation(s)",
+                directory, segments.size(), recovered.size());
+
+        running = true;
+        flusher = new Thread(this::flushLoop, "user-outbox-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Необработанные заявки, найденные при старте. Возвращает их только один раз, чтобы пароли
+     * не оставались в памяти журнала после повторной отправки.
+     */
+    public List<JournaledUserCreation> takePendingEntries() {
+        lock.lock();
+        try {
+            List<JournaledUserCreation> entries = recovered;
+            recovered = List.of();
+            return entries;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Дописывает заявку и ждёт, пока она не будет сброшена на диск.
+     */
+    public void append(UUID jobId, UserRequest request) throws InterruptedException {
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(request);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        long sequence;
+        lock.lock();
+        try {
+            sequence = write(CREATE, jobId, payload);
+            pendingJobs.put(jobId, active);
+            active.pending.add(jobId);
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(sequence);
+    }
+
+    /**
+     * Отмечает заявку обработанной. Не ждёт сброса на диск: потеря отметки приводит лишь к повторной отправке.
+     */
+    public void markDone(UUID jobId) {
+        lock.lock();
+        try {
+            write(DONE, jobId, NO_PAYLOAD);
+            Segment segment = pendingJobs.remove(jobId);
+            if (segment != null) {
+                segment.pending.remove(jobId);
+                deleteIfCompleted(segment);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        lock.lock();
+        try {
+            running = false;
+            written.signalAll();
+            flushed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (flusher != null) {
+            flusher.join();
+        }
+        if (active != null) {
+            active.buffer.force();
+        }
+        if (lockChannel != null) {
+            try {
+                lockChannel.close();
+            } catch (IOException ex) {
+                log.warn("Could not release outbox lock in {}", directory, ex);
+            }
+        }
+    }
+
+    private void lockDirectory() throws IOException {
+        FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock fileLock;
+        try {
+            fileLock = channel.tryLock();
+        } catch (OverlappingFileLockException ex) {
+            fileLock = null;
+        }
+        if (fileLock == null) {
+            channel.close();
+            throw new IllegalStateException("Outbox directory " + directory.toAbsolutePath()
+                    + " is already used by another instance");
+        }
+        lockChannel = channel;
+    }
+
+    private long write(byte type, UUID jobId, byte[] payload) {
+        int recordSize = HEADER_SIZE + payload.length + TRAILER_SIZE;
+        if (recordSize + Integer.BYTES > segmentSize) {
+            throw new IllegalArgumentException("Outbox record of " + recordSize + " bytes exceeds the segment size");
+        }
+        if (active.position + recordSize + Integer.BYTES > segmentSize) {
+            roll();
+        }
+        MappedByteBuffer buffer = active.buffer;
+        int position = active.position;
+        buffer.put(position + Integer.BYTES, type);
+        buffer.putLong(position + Integer.BYTES + Byte.BYTES, jobId.getMostSignificantBits());
+        buffer.putLong(position + Integer.BYTES + Byte.BYTES + Long.BYTES, jobId.getLeastSignificantBits());
+        buffer.put(position + HEADER_SIZE, payload);
+        buffer.putInt(position + HEADER_SIZE + payload.length, checksum(buffer, position, recordSize));
+        buffer.putInt(position + recordSize, 0);
+        buffer.putInt(position, recordSize);
+        active.position = position + recordSize;
+        appendedSequence++;
+        written.signal();
+        return appendedSequence;
+    }
+
+    private void roll() {
+        Segment previous = active;
+        previous.buffer.force();
+        durableSequence = appendedSequence;
+        flushed.signalAll();
+        active = createSegment(previous.id + 1);
+        deleteIfCompleted(previous);
+    }
+
+    private void flushLoop() {
+        while (true) {
+            long target;
+            Segment segment;
+            lock.lock();
+            try {
+                while (running && durableSequence == appendedSequence) {
+                    written.awaitUninterruptibly();
+                }
+                if (!running) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (!maxCommitDelay.isZero()) {
+                LockSupport.parkNanos(maxCommitDelay.toNanos());
+            }
+            lock.lock();
+            try {
+                target = appendedSequence;
+                segment = active;
+            } finally {
+                lock.unlock();
+            }
+            segment.buffer.force();
+            lock.lock();
+            try {
+                durableSequence = Math.max(durableSequence, target);
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void awaitDurable(long sequence) throws InterruptedException {
+        lock.lock();
+        try {
+            while (durableSequence < sequence) {
+                if (!running) {
+                    throw new IllegalStateException("Outbox is closed");
+                }
+                flushed.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void scan(Segment segment, Map<UUID, JournaledUserCreation> pending) throws IOException {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + HEADER_SIZE + TRAILER_SIZE <= segmentSize) {
+            int recordSize = buffer.getInt(position);
+            if (recordSize < HEADER_SIZE + TRAILER_SIZE || position + recordSize > segmentSize) {
+                break;
+            }
+            int payloadSize = recordSize - HEADER_SIZE - TRAILER_SIZE;
+            if (buffer.getInt(position + HEADER_SIZE + payloadSize) != checksum(buffer, position, recordSize)) {
+                log.warn("Outbox segment {} has a torn record at offset {}, ignoring the tail", segment.id, position);
+                break;
+            }
+            byte type = buffer.get(position + Integer.BYTES);
+            UUID jobId = new UUID(buffer.getLong(position + Integer.BYTES + Byte.BYTES),
+                    buffer.getLong(position + Integer.BYTES + Byte.BYTES + Long.BYTES));
+            if (type == CREATE) {
+                byte[] payload = new byte[payloadSize];
+                buffer.get(position + HEADER_SIZE, payload);
+                pending.put(jobId, new JournaledUserCreation(jobId, objectMapper.readValue(payload, UserRequest.class)));
+                pendingJobs.put(jobId, segment);
+                segment.pending.add(jobId);
+            } else if (type == DONE) {
+                pending.remove(jobId);
+                Segment owner = pendingJobs.remove(jobId);
+                if (owner != null) {
+                    owner.pending.remove(jobId);
+                }
+            }
+            position += recordSize;
+        }
+        if (position + Integer.BYTES <= segmentSize) {
+            buffer.putInt(position, 0);
+        }
+        segment.position = position;
+    }
+
+    private Segment createSegment(long id) {
+        try {
+            Segment segment = Segment.map(directory.resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX), id, segmentSize, true);
+            try (FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+                directoryChannel.force(true);
+            } catch (IOException ex) {
+                log.debug("Could not fsync outbox directory {}", directory, ex);
+            }
+            segments.put(id, segment);
+            return segment;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void deleteIfCompleted(Segment segment) {
+        if (segment == active || !segment.pending.isEmpty()) {
+            return;
+        }
+        segments.remove(segment.id);
+        try {
+            Files.deleteIfExists(segment.path);
+            log.debug("Deleted completed outbox segment {}", segment.id);
+        } catch (IOException ex) {
+            log.warn("Could not delete outbox segment {}", segment.path, ex);
+        }
+    }
+
+    private static int checksum(MappedByteBuffer buffer, int position, int recordSize) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(position + Integer.BYTES, recordSize - Integer.BYTES - TRAILER_SIZE));
+        return (int) crc.getValue();
+    }
+
+    private static long segmentId(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static final class Segment {
+        private final long id;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private final Set<UUID> pending = new HashSet<>();
+        private int position;
+
+        private Segment(long id, Path path, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        private static Segment map(Path path, long id, int size, boolean create) throws IOException {
+            List<StandardOpenOption> options = new ArrayList<>(List.of(StandardOpenOption.READ, StandardOpenOption.WRITE));
+            if (create) {
+                options.add(StandardOpenOption.CREATE_NEW);
+            }
+            try (FileChannel channel = FileChannel.open(path, Set.copyOf(options))) {
+                if (create) {
+                    try {
+                        Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rw-------"));
+                    } catch (UnsupportedOperationException ignored) {
+                        // не POSIX файловая система
+                    }
+                }
+                return new Segment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            }
+        }
+    }
+}
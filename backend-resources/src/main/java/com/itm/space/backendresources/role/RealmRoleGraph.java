@@ -0,0 +1,230 @@
+package com.itm.space.backendresources.role;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.keycloak.representations.idm.GroupRepresentation;
+import org.keycloak.representations.idm.RoleRepresentation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Локальная копия графа realm-ролей: composite-роли и роли, унаследованные от групп (включая родительские группы).
+ * Граф загружается из Keycloak фоновым потоком раз в {@code refresh-interval} и публикуется целиком как
+ * неизменяемый {@link Snapshot}; пока первая загрузка не прошла, граф пуст и роли не раскрываются.
+ * С {@code refresh-enabled: false} граф не загружается вовсе (тесты без Keycloak).
+ * Роли клиентов в граф не входят. Источник ролей - {@link RealmRoleSource}: admin-клиент Keycloak в servlet-стеке
+ * или WebClient в профиле {@code reactive}.
+ */
+@Slf4j
+@Component
+public class RealmRoleGraph {
+    private final RealmRoleSource realmRoleSource;
+    private final Duration refreshInterval;
+    private final boolean refreshEnabled;
+    private final ScheduledExecutorService refresher;
+    private final Counter refreshSuccess;
+    private final Counter refreshFailure;
+    private volatile Snapshot current = Snapshot.EMPTY;
+
+    public RealmRoleGraph(RealmRoleSource realmRoleSource,
+                          MeterRegistry meterRegistry,
+                          @Value("${keycloak.role-graph.refresh-interval}") Duration refreshInterval,
+                          @Value("${keycloak.role-graph.refresh-enabled}") boolean refreshEnabled) {
+        this.realmRoleSource = realmRoleSource;
+        this.refreshInterval = refreshInterval;
+        this.refreshEnabled = refreshEnabled;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("role-graph-refresh-");
+        threadFactory.setDaemon(true);
+        this.refresher = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        this.refreshSuccess = refreshCounter(meterRegistry, "success");
+        this.refreshFailure = refreshCounter(meterRegistry, "failure");
+        Gauge.builder("keycloak.role-graph.roles", this, graph -> graph.current.dictionary.size())
+                .description("Realm roles in the local role graph")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!refreshEnabled) {
+            log.info("Realm role graph refresh is disabled, roles will not be expanded");
+            return;
+        }
+        refresher.scheduleWithFixedDelay(this::refresh, 0, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public Snapshot current() {
+        return current;
+    }
+
+    /**
+     * Эффективные realm-роли пользователя по его прямым ролям и группам.
+     */
+    public List<String> effectiveRoles(List<RoleRepresentation> roles, List<GroupRepresentation> groups) {
+        return current.effectiveRoles(
+                roles.stream().map(RoleRepresentation::getName).toList(),
+                groups.stream().map(GroupRepresentation::getId).toList()).names();
+    }
+
+    private void refresh() {
+        try {
+            List<RoleRepresentation> roles = realmRoleSource.listRealmRoles();
+            Map<String, Set<String>> composites = new HashMap<>();
+            for (RoleRepresentation role : roles) {
+                if (Boolean.TRUE.equals(role.isComposite())) {
+                    composites.put(role.getName(), realmRoleSource.getRealmRoleComposites(role.getName())
+                            .stream().map(RoleRepresentation::getName).collect(Collectors.toSet()));
+                }
+            }
+            current = Snapshot.build(roles.stream().map(RoleRepresentation::getName).toList(), composites,
+                    realmRoleSource.listGroups());
+            refreshSuccess.increment();
+            log.debug("Role graph refreshed: {} roles, {} composites", roles.size(), composites.size());
+        } catch (RuntimeException ex) {
+            refreshFailure.increment();
+            log.warn("Could not refresh realm role graph, keeping {} known roles: {}",
+                    current.dictionary.size(), ex.getMessage());
+        }
+    }
+
+    private static Counter refreshCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("keycloak.role-graph.refresh")
+                .description("Background role graph refreshes by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * Граф на момент одной загрузки. Для каждой роли заранее посчитано её транзитивное замыкание по composite-связям,
+     * для каждой группы - все роли, которые она даёт с учётом родительских групп.
+     */
+    public static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(RoleDictionary.EMPTY, new long[0][], Map.of());
+
+        private final RoleDictionary dictionary;
+        private final long[][] closures;
+        private final Map<String, long[]> groupRoles;
+
+        private Snapshot(RoleDictionary dictionary, long[][] closures, Map<String, long[]> groupRoles) {
+            this.dictionary = dictionary;
+            this.closures = closures;
+            this.groupRoles = groupRoles;
+        }
+
+        public static Snapshot build(List<String> roles, Map<String, Set<String>> composites,
+                                     List<GroupRepresentation> groups) {
+            RoleDictionary dictionary = new RoleDictionary(roles);
+            int[][] edges = new int[roles.size()][];
+            for (int i = 0; i < roles.size(); i++) {
+                edges[i] = composites.getOrDefault(roles.get(i), Set.of()).stream()
+                        .mapToInt(dictionary::indexOf)
+                        .filter(index -> index >= 0)
+                        .toArray();
+            }
+            long[][] closures = new long[roles.size()][];
+            for (int i = 0; i < roles.size(); i++) {
+                closures[i] = closure(i, edges, dictionary.size());
+            }
+            Map<String, long[]> groupRoles = new HashMap<>();
+            collectGroups(groups, RoleSet.newWords(dictionary.size()), dictionary, closures, groupRoles);
+            return new Snapshot(dictionary, closures, groupRoles);
+        }
+
+        /**
+         * Роли с раскрытыми composite. Роли, которых нет в графе, остаются в наборе как есть.
+         */
+        public RoleSet expand(Collection<String> roles) {
+            return effectiveRoles(roles, List.of());
+        }
+
+        public RoleSet effectiveRoles(Collection<String> roles, Collection<String> groupIds) {
+            List<String> unknown = new ArrayList<>(0);
+            for (String role : roles) {
+                if (dictionary.indexOf(role) < 0 && !unknown.contains(role)) {
+                    unknown.add(role);
+                }
+            }
+            RoleDictionary target = unknown.isEmpty() ? dictionary : dictionary.withExtra(unknown);
+            long[] words = RoleSet.newWords(target.size());
+            for (String role : roles) {
+                int index = dictionary.indexOf(role);
+                if (index >= 0) {
+                    RoleSet.or(words, closures[index]);
+                } else {
+                    RoleSet.set(words, target.indexOf(role));
+                }
+            }
+            for (String groupId : groupIds) {
+                long[] inherited = groupRoles.get(groupId);
+                if (inherited != null) {
+                    RoleSet.or(words, inherited);
+                }
+            }
+            return new RoleSet(target, words);
+        }
+
+        private static long[] closure(int role, int[][] edges, int size) {
+            long[] words = RoleSet.newWords(size);
+            boolean[] visited = new boolean[size];
+            Deque<Integer> pending = new ArrayDeque<>();
+            pending.push(role);
+            visited[role] = true;
+            // composite-роли могут ссылаться друг на друга по кругу, поэтому обход идёт с отметкой посещённых
+            while (!pending.isEmpty()) {
+                int next = pending.pop();
+                RoleSet.set(words, next);
+                for (int child : edges[next]) {
+                    if (!visited[child]) {
+                        visited[child] = true;
+                        pending.push(child);
+                    }
+                }
+            }
+            return words;
+        }
+
+        private static void collectGroups(List<GroupRepresentation> groups, long[] parentRoles,
+                                          RoleDictionary dictionary, long[][] closures,
+                                          Map<String, long[]> groupRoles) {
+            if (groups == null) {
+                return;
+            }
+            for (GroupRepresentation group : groups) {
+                long[] words = parentRoles.clone();
+                if (group.getRealmRoles() != null) {
+                    for (String role : group.getRealmRoles()) {
+                        int index = dictionary.indexOf(role);
+                        if (index >= 0) {
+                            RoleSet.or(words, closures[index]);
+                        }
+                    }
+                }
+                groupRoles.put(group.getId(), words);
+                collectGroups(group.getSubGroups(), words, dictionary, closures, groupRoles);
+            }
+        }
+    }
+}
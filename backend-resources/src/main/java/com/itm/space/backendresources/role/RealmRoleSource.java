@@ -0,0 +1,21 @@
+package com.itm.space.backendresources.role;
+
+import org.keycloak.representations.idm.GroupRepresentation;
+import org.keycloak.representations.idm.RoleRepresentation;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Откуда {@link RealmRoleGraph} загружает роли и группы реалма. Вызывается только фоновым потоком графа,
+ * поэтому реализация может блокироваться.
+ */
+public interface RealmRoleSource {
+
+    List<RoleRepresentation> listRealmRoles();
+
+    Set<RoleRepresentation> getRealmRoleComposites(String roleName);
+
+    // Полное дерево групп с realm-ролями каждой группы
+    List<GroupRepresentation> listGroups();
+}
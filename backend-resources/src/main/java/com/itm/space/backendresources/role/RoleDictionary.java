@@ -0,0 +1,51 @@
+package com.itm.space.backendresources.role;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Неизменяемая нумерация ролей реалма: номер роли - это номер её бита в {@link RoleSet}.
+ */
+public final class RoleDictionary {
+    static final RoleDictionary EMPTY = new RoleDictionary(List.of());
+
+    private final String[] names;
+    private final Map<String, Integer> indexes;
+
+    RoleDictionary(List<String> names) {
+        this.names = names.toArray(String[]::new);
+        this.indexes = new HashMap<>(names.size() * 2);
+        for (int i = 0; i < this.names.length; i++) {
+            if (indexes.putIfAbsent(this.names[i], i) != null) {
+                throw new IllegalArgumentException("Duplicate role " + this.names[i]);
+            }
+        }
+    }
+
+    /**
+     * @return номер роли или {@code -1}, если такой роли в словаре нет
+     */
+    public int indexOf(String name) {
+        Integer index = indexes.get(name);
+        return index != null ? index : -1;
+    }
+
+    public String nameOf(int index) {
+        return names[index];
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    // Роли, которых ещё нет в графе (например, созданные после последнего обновления), получают номера в конце
+    RoleDictionary withExtra(Collection<String> extra) {
+        List<String> extended = new ArrayList<>(names.length + extra.size());
+        extended.addAll(List.of(names));
+        extended.addAll(extra);
+        return new RoleDictionary(extended);
+    }
+}
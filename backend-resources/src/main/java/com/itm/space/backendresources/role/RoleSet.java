@@ -0,0 +1,67 @@
+package com.itm.space.backendresources.role;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Неизменяемый набор ролей в виде битовой маски над {@link RoleDictionary}:
+ * проверка роли - один поиск номера в словаре и одна проверка бита.
+ */
+public final class RoleSet {
+    private final RoleDictionary dictionary;
+    private final long[] words;
+
+    // Массив принадлежит набору и после передачи не изменяется
+    RoleSet(RoleDictionary dictionary, long[] words) {
+        this.dictionary = dictionary;
+        this.words = words;
+    }
+
+    public boolean contains(String role) {
+        int index = dictionary.indexOf(role);
+        return index >= 0 && contains(index);
+    }
+
+    public boolean contains(int index) {
+        int word = index >>> 6;
+        return word < words.length && (words[word] & 1L << index) != 0;
+    }
+
+    public int size() {
+        int size = 0;
+        for (long word : words) {
+            size += Long.bitCount(word);
+        }
+        return size;
+    }
+
+    public List<String> names() {
+        List<String> names = new ArrayList<>(size());
+        for (int word = 0; word < words.length; word++) {
+            long bits = words[word];
+            while (bits != 0) {
+                names.add(dictionary.nameOf(word * 64 + Long.numberOfTrailingZeros(bits)));
+                bits &= bits - 1;
+            }
+        }
+        return names;
+    }
+
+    public RoleDictionary getDictionary() {
+        return dictionary;
+    }
+
+    static long[] newWords(int size) {
+        return new long[(size + 63) >>> 6];
+    }
+
+    static void set(long[] words, int index) {
+        words[index >>> 6] |= 1L << index;
+    }
+
+    static void or(long[] target, long[] source) {
+        for (int i = 0; i < source.length; i++) {
+            target[i] |= source[i];
+        }
+    }
+}
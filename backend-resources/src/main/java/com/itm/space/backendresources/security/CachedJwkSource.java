@@ -0,0 +1,188 @@
+package com.itm.space.backendresources.security;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Ключи подписи Keycloak без обращения к нему на пути запроса.
+ * <p>
+ * При старте ключи читаются из {@code snapshot} на диске - это либо заранее подложенный файл, либо
+ * снимок, сохранённый после прошлой загрузки. JWKS обновляется фоновым потоком раз в
+ * {@code refresh-interval}; каждый удачный ответ заменяет ключи в памяти и перезаписывает снимок.
+ * Запрос с неизвестным {@code kid} не ждёт загрузки: он получает 401, а внеочередное обновление
+ * ставится в очередь не чаще раза в {@code min-refresh-interval}. С {@code refresh-enabled: false} (тесты,
+ * работа без Keycloak) ключи берутся только из снимка, а сам снимок не перезаписывается.
+ */
+@Slf4j
+@Component
+public class CachedJwkSource implements JWKSource<SecurityContext> {
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+    private static final int READ_TIMEOUT_MILLIS = 5000;
+    private static final int SIZE_LIMIT_BYTES = 512 * 1024;
+
+    private final URL jwkSetUri;
+    private final Path snapshot;
+    private final Duration refreshInterval;
+    private final long minRefreshIntervalNanos;
+    private final boolean refreshEnabled;
+    private final Set<JWSAlgorithm> algorithms;
+    private final ScheduledExecutorService refresher;
+    private final AtomicLong lastRefreshRequest;
+    private final Counter refreshSuccess;
+    private final Counter refreshFailure;
+    private final Counter unknownKeyThrottled;
+    private volatile JWKSet keys = new JWKSet();
+
+    public CachedJwkSource(MeterRegistry meterRegistry,
+                           @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri}") URL jwkSetUri,
+                           @Value("${security.jwks.snapshot}") Path snapshot,
+                           @Value("${security.jwks.refresh-interval}") Duration refreshInterval,
+                           @Value("${security.jwks.min-refresh-interval}") Duration minRefreshInterval,
+                           @Value("${security.jwks.refresh-enabled}") boolean refreshEnabled,
+                           @Value("${security.jwks.algorithms}") List<String> algorithms) {
+        this.jwkSetUri = jwkSetUri;
+        this.snapshot = snapshot;
+        this.refreshInterval = refreshInterval;
+        this.minRefreshIntervalNanos = minRefreshInterval.toNanos();
+        this.refreshEnabled = refreshEnabled;
+        this.algorithms = algorithms.stream().map(JWSAlgorithm::parse).collect(Collectors.toUnmodifiableSet());
+        this.lastRefreshRequest = new AtomicLong(System.nanoTime() - minRefreshIntervalNanos);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("jwks-refresh-");
+        threadFactory.setDaemon(true);
+        this.refresher = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        this.refreshSuccess = refreshCounter(meterRegistry, "success");
+        this.refreshFailure = refreshCounter(meterRegistry, "failure");
+        this.unknownKeyThrottled = Counter.builder("security.jwks.unknown-key.throttled")
+                .description("Unknown kid lookups that did not trigger a refresh because of the rate limit")
+                .register(meterRegistry);
+        Gauge.builder("security.jwks.keys", this, source -> source.keys.size())
+                .description("Signing keys currently known to the resource server")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        loadSnapshot();
+        if (!refreshEnabled) {
+            log.info("JWKS refresh is disabled, using {} signing keys from the snapshot", keys.size());
+            return;
+        }
+        refresher.scheduleWithFixedDelay(this::refresh, 0, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) {
+        List<JWK> matches = jwkSelector.select(keys);
+        if (matches.isEmpty()) {
+            requestRefresh();
+        }
+        return matches;
+    }
+
+    /**
+     * Процессор для {@code NimbusJwtDecoder}: проверяет только подпись по ключам этого источника и алгоритмам
+     * {@code security.jwks.algorithms}, claims проверяют валидаторы Spring.
+     */
+    public DefaultJWTProcessor<SecurityContext> jwtProcessor() {
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(algorithms, this));
+        jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> {
+        });
+        return jwtProcessor;
+    }
+
+    private void requestRefresh() {
+        if (!refreshEnabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        long last = lastRefreshRequest.get();
+        if (now - last < minRefreshIntervalNanos || !lastRefreshRequest.compareAndSet(last, now)) {
+            unknownKeyThrottled.increment();
+            return;
+        }
+        refresher.execute(this::refresh);
+    }
+
+    private void refresh() {
+        try {
+            JWKSet loaded = JWKSet.load(jwkSetUri, CONNECT_TIMEOUT_MILLIS, READ_TIMEOUT_MILLIS, SIZE_LIMIT_BYTES);
+            keys = loaded;
+            refreshSuccess.increment();
+            saveSnapshot(loaded);
+        } catch (IOException | ParseException ex) {
+            refreshFailure.increment();
+            log.warn("Could not refresh JWKS from {}, keeping {} known keys: {}", jwkSetUri, keys.size(),
+                    ex.getMessage());
+        }
+    }
+
+    private void loadSnapshot() {
+        if (!Files.isRegularFile(snapshot)) {
+            log.info("No JWKS snapshot at {}, signing keys will be available after the first refresh", snapshot);
+            return;
+        }
+        try {
+            keys = JWKSet.parse(Files.readString(snapshot, StandardCharsets.UTF_8));
+            log.info("Loaded {} signing keys from {}", keys.size(), snapshot);
+        } catch (IOException | ParseException ex) {
+            log.warn("Ignoring unreadable JWKS snapshot {}: {}", snapshot, ex.getMessage());
+        }
+    }
+
+    private void saveSnapshot(JWKSet loaded) {
+        try {
+            Path parent = snapshot.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temporary = Files.createTempFile(parent, "jwks-", ".tmp");
+            // Только публичные части ключей
+            Files.writeString(temporary, loaded.toString(true), StandardCharsets.UTF_8);
+            Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            log.warn("Could not save JWKS snapshot to {}: {}", snapshot, ex.getMessage());
+        }
+    }
+
+    private static Counter refreshCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("security.jwks.refresh")
+                .description("Background JWKS refreshes by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+}
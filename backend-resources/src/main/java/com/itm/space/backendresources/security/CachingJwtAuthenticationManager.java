@@ -0,0 +1,36 @@
+package com.itm.space.backendresources.security;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Проверка bearer-токена для servlet-стека: сначала {@link VerifiedTokenCache}, при промахе -
+ * обычный {@link JwtAuthenticationProvider}.
+ */
+@RequiredArgsConstructor
+public class CachingJwtAuthenticationManager implements AuthenticationManager {
+    private final JwtAuthenticationProvider delegate;
+    private final VerifiedTokenCache verifiedTokenCache;
+
+    @Override
+    public Authentication authenticate(Authentication authentication) {
+        BearerTokenAuthenticationToken bearer = (BearerTokenAuthenticationToken) authentication;
+        ByteBuffer digest = VerifiedTokenCache.digest(bearer.getToken());
+        VerifiedTokenCache.VerifiedToken cached = verifiedTokenCache.getIfPresent(digest);
+        if (cached != null) {
+            // Как и JwtAuthenticationProvider, переносим details текущего запроса
+            return cached.toAuthentication(bearer.getDetails());
+        }
+        Authentication verified = verifiedTokenCache.verificationTimer().record(() -> delegate.authenticate(bearer));
+        if (verified instanceof JwtAuthenticationToken jwtAuthentication) {
+            verifiedTokenCache.put(digest, jwtAuthentication);
+        }
+        return verified;
+    }
+}
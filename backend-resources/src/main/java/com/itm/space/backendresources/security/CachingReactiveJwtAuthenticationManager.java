@@ -0,0 +1,43 @@
+package com.itm.space.backendresources.security;
+
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.JwtReactiveAuthenticationManager;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Реактивный вариант {@link CachingJwtAuthenticationManager}.
+ */
+@RequiredArgsConstructor
+public class CachingReactiveJwtAuthenticationManager implements ReactiveAuthenticationManager {
+    private final JwtReactiveAuthenticationManager delegate;
+    private final VerifiedTokenCache verifiedTokenCache;
+
+    @Override
+    public Mono<Authentication> authenticate(Authentication authentication) {
+        if (!(authentication instanceof BearerTokenAuthenticationToken bearer)) {
+            return Mono.empty();
+        }
+        ByteBuffer digest = VerifiedTokenCache.digest(bearer.getToken());
+        VerifiedTokenCache.VerifiedToken cached = verifiedTokenCache.getIfPresent(digest);
+        if (cached != null) {
+            return Mono.just(cached.toAuthentication(bearer.getDetails()));
+        }
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start();
+            return delegate.authenticate(bearer)
+                    .doOnNext(verified -> {
+                        sample.stop(verifiedTokenCache.verificationTimer());
+                        if (verified instanceof JwtAuthenticationToken jwtAuthentication) {
+                            verifiedTokenCache.put(digest, jwtAuthentication);
+                        }
+                    });
+        });
+    }
+}
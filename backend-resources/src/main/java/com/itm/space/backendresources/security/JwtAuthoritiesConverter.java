@@ -0,0 +1,88 @@
+package com.itm.space.backendresources.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.itm.space.backendresources.role.RealmRoleGraph;
+import com.itm.space.backendresources.role.RoleSet;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Превращает realm-роли из claim'а {@code realm_access.roles} в {@link RoleSetAuthenticationToken}: роли раскрываются
+ * по {@link RealmRoleGraph} с учётом composite, authorities получают вид {@code ROLE_<роль>}.
+ * У большинства пользователей одинаковые наборы ролей, поэтому результат кэшируется по точному списку ролей
+ * и разделяется между запросами, пока не обновился граф ролей.
+ */
+@Component
+public class JwtAuthoritiesConverter implements Converter<Jwt, AbstractAuthenticationToken> {
+    private static final String REALM_ACCESS_CLAIM = "realm_access";
+    private static final String ROLES = "roles";
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    private final Supplier<RealmRoleGraph.Snapshot> roleGraph;
+    private final Cache<List<String>, Conversion> conversions;
+
+    @Autowired
+    public JwtAuthoritiesConverter(RealmRoleGraph realmRoleGraph,
+                                   @Value("${security.authorities-cache.max-size}") long maxSize) {
+        this(realmRoleGraph::current, maxSize);
+    }
+
+    JwtAuthoritiesConverter(Supplier<RealmRoleGraph.Snapshot> roleGraph, long maxSize) {
+        this.roleGraph = roleGraph;
+        this.conversions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    @Override
+    public RoleSetAuthenticationToken convert(Jwt jwt) {
+        Conversion conversion = conversionOf(roles(jwt));
+        return new RoleSetAuthenticationToken(jwt, conversion.authorities(), conversion.roles());
+    }
+
+    private Conversion conversionOf(List<String> roles) {
+        RealmRoleGraph.Snapshot graph = roleGraph.get();
+        Conversion cached = conversions.getIfPresent(roles);
+        if (cached != null && cached.graph() == graph) {
+            return cached;
+        }
+        // Ключом становится копия: список из claim'а принадлежит токену
+        Conversion conversion = convert(graph, List.copyOf(roles));
+        conversions.put(conversion.key(), conversion);
+        return conversion;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> roles(Jwt jwt) {
+        Map<String, Object> realmAccess = jwt.getClaimAsMap(REALM_ACCESS_CLAIM);
+        if (realmAccess == null || !(realmAccess.get(ROLES) instanceof List<?> roles)) {
+            return List.of();
+        }
+        return (List<String>) roles;
+    }
+
+    private static Conversion convert(RealmRoleGraph.Snapshot graph, List<String> key) {
+        RoleSet roles = graph.expand(key);
+        List<GrantedAuthority> authorities = new ArrayList<>(roles.size());
+        for (String role : roles.names()) {
+            authorities.add(new SimpleGrantedAuthority(ROLE_PREFIX + role));
+        }
+        return new Conversion(key, graph, roles, List.copyOf(authorities));
+    }
+
+    private record Conversion(List<String> key, RealmRoleGraph.Snapshot graph, RoleSet roles,
+                              List<GrantedAuthority> authorities) {
+    }
+}
@@ -0,0 +1,205 @@
+package com.itm.space.backendresources.security;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.RequestPath;
+import org.springframework.security.authentication.AuthenticationTrustResolver;
+import org.springframework.security.authentication.AuthenticationTrustResolverImpl;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.web.util.ServletRequestPathUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Авторизация запросов по правилам "метод + путь -> authority", собранным при старте в дерево по сегментам пути.
+ * Проверка - один спуск по дереву и проверка бита в {@link RoleSetAuthenticationToken#getRoles()}
+ * (для прочих аутентификаций - проход по authorities), без перебора matcher'ов.
+ * <p>
+ * Сегменты шаблона: литерал, {@code *} или {@code {имя}} - ровно один сегмент, {@code **} - любой остаток пути
+ * (только в конце шаблона). Литерал важнее одного сегмента, а тот важнее остатка; правило для конкретного
+ * метода важнее правила для любого метода. Запрос, не подошедший ни под одно правило, запрещён.
+ * <p>
+ * Правила сравниваются с путём так, как его разбирает {@code DispatcherServlet}: сегменты декодированы и очищены
+ * от {@code ;параметров}, поэтому {@code /api/%75sers/1} попадает под правило для {@code /api/users/{id}}.
+ */
+public final class PathAuthorizationManager implements AuthorizationManager<RequestAuthorizationContext> {
+    private static final AuthorizationDecision GRANTED = new AuthorizationDecision(true);
+    private static final AuthorizationDecision DENIED = new AuthorizationDecision(false);
+    private static final String ANY_METHOD = "*";
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    private final AuthenticationTrustResolver trustResolver = new AuthenticationTrustResolverImpl();
+    private final Node root;
+
+    private PathAuthorizationManager(Node root) {
+        this.root = root;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public AuthorizationDecision check(Supplier<Authentication> authentication, RequestAuthorizationContext context) {
+        HttpServletRequest request = context.getRequest();
+        RequestPath path = ServletRequestPathUtils.hasParsedRequestPath(request)
+                ? ServletRequestPathUtils.getParsedRequestPath(request)
+                : ServletRequestPathUtils.parseAndCache(request);
+        Requirement requirement = root.find(request.getMethod(), segments(path.pathWithinApplication()), 0);
+        if (requirement == null) {
+            return DENIED;
+        }
+        return requirement == Requirement.PERMIT_ALL || isGranted(authentication.get(), requirement)
+                ? GRANTED : DENIED;
+    }
+
+    private boolean isGranted(Authentication authentication, Requirement requirement) {
+        if (authentication == null || !authentication.isAuthenticated() || trustResolver.isAnonymous(authentication)) {
+            return false;
+        }
+        if (requirement.role() != null && authentication instanceof RoleSetAuthenticationToken token
+                && token.getRoles() != null) {
+            return token.getRoles().contains(requirement.role());
+        }
+        for (GrantedAuthority grantedAuthority : authentication.getAuthorities()) {
+            if (requirement.authority().equals(grantedAuthority.getAuthority())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> segments(PathContainer path) {
+        List<String> segments = new ArrayList<>(8);
+        for (PathContainer.Element element : path.elements()) {
+            if (element instanceof PathContainer.PathSegment segment && !segment.valueToMatch().isEmpty()) {
+                segments.add(segment.valueToMatch());
+            }
+        }
+        return segments;
+    }
+
+    private static List<String> segments(String path) {
+        List<String> segments = new ArrayList<>(8);
+        int start = 0;
+        while (start < path.length()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            if (end > start) {
+                segments.add(path.substring(start, end));
+            }
+            start = end + 1;
+        }
+        return segments;
+    }
+
+    public static final class Builder {
+        private final Node root = new Node();
+
+        private Builder() {
+        }
+
+        public Builder hasAuthority(HttpMethod method, String pattern, String authority) {
+            return rule(method.name(), pattern, authority);
+        }
+
+        public Builder hasAuthority(String pattern, String authority) {
+            return rule(ANY_METHOD, pattern, authority);
+        }
+
+        public Builder permitAll(String pattern) {
+            return rule(ANY_METHOD, pattern, null);
+        }
+
+        public PathAuthorizationManager build() {
+            return new PathAuthorizationManager(root);
+        }
+
+        private Builder rule(String method, String pattern, String authority) {
+            Requirement requirement = authority != null ? new Requirement(authority) : Requirement.PERMIT_ALL;
+            List<String> segments = segments(pattern);
+            Node node = root;
+            for (int i = 0; i < segments.size(); i++) {
+                String segment = segments.get(i);
+                if (segment.equals("**")) {
+                    if (i != segments.size() - 1) {
+                        throw new IllegalArgumentException("'**' must be the last segment of " + pattern);
+                    }
+                    put(node.rest, method, pattern, requirement);
+                    return this;
+                }
+                node = isVariable(segment)
+                        ? node.variable()
+                        : node.literals.computeIfAbsent(segment, key -> new Node());
+            }
+            put(node.exact, method, pattern, requirement);
+            return this;
+        }
+
+        private static boolean isVariable(String segment) {
+            return segment.equals("*") || segment.startsWith("{") && segment.endsWith("}");
+        }
+
+        private static void put(Map<String, Requirement> rules, String method, String pattern,
+                                Requirement requirement) {
+            if (rules.putIfAbsent(method, requirement) != null) {
+                throw new IllegalArgumentException("Duplicate rule for " + method + " " + pattern);
+            }
+        }
+    }
+
+    private static final class Node {
+        private final Map<String, Node> literals = new HashMap<>();
+        private final Map<String, Requirement> exact = new HashMap<>();
+        private final Map<String, Requirement> rest = new HashMap<>();
+        private Node variable;
+
+        private Node variable() {
+            if (variable == null) {
+                variable = new Node();
+            }
+            return variable;
+        }
+
+        private Requirement find(String method, List<String> segments, int index) {
+            if (index == segments.size()) {
+                Requirement requirement = select(exact, method);
+                return requirement != null ? requirement : select(rest, method);
+            }
+            Node literal = literals.get(segments.get(index));
+            Requirement requirement = literal != null ? literal.find(method, segments, index + 1) : null;
+            if (requirement == null && variable != null) {
+                requirement = variable.find(method, segments, index + 1);
+            }
+            return requirement != null ? requirement : select(rest, method);
+        }
+
+        private static Requirement select(Map<String, Requirement> rules, String method) {
+            if (rules.isEmpty()) {
+                return null;
+            }
+            Requirement requirement = rules.get(method);
+            return requirement != null ? requirement : rules.get(ANY_METHOD);
+        }
+    }
+
+    // Для authority вида ROLE_<роль> заранее отрезан префикс, чтобы проверять роль по RoleSet без лишних строк
+    private record Requirement(String authority, String role) {
+        private static final Requirement PERMIT_ALL = new Requirement(null, null);
+
+        private Requirement(String authority) {
+            this(authority, authority.startsWith(ROLE_PREFIX) ? authority.substring(ROLE_PREFIX.length()) : null);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.itm.space.backendresources.security;
+
+import com.itm.space.backendresources.role.RoleSet;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.util.Collection;
+
+/**
+ * {@link JwtAuthenticationToken} с эффективными realm-ролями в виде {@link RoleSet}, чтобы проверка роли
+ * была проверкой бита, а не перебором authorities.
+ */
+public class RoleSetAuthenticationToken extends JwtAuthenticationToken {
+    private final transient RoleSet roles;
+
+    public RoleSetAuthenticationToken(Jwt jwt, Collection<? extends GrantedAuthority> authorities, RoleSet roles) {
+        super(jwt, authorities, jwt.getSubject());
+        this.roles = roles;
+    }
+
+    public RoleSet getRoles() {
+        return roles;
+    }
+}
@@ -0,0 +1,119 @@
+package com.itm.space.backendresources.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.itm.space.backendresources.role.RoleSet;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Кэш уже проверенных access token'ов. Ключ - SHA-256 от строки токена, значение - декодированный {@code Jwt}
+ * с готовыми authorities, которое живёт до {@code exp} токена. Повторный запрос с тем же токеном
+ * обходится одним хэшем, одним поиском в кэше и новым объектом аутентификации вместо разбора и проверки
+ * RSA-подписи. Сам объект аутентификации изменяемый (details, флаг authenticated), поэтому в кэше его нет.
+ * Время полной проверки пишется в {@code security.jwt.verification}: сэкономленное время примерно равно
+ * числу попаданий в кэш {@code jwt}, умноженному на среднее этого таймера.
+ */
+@Component
+public class VerifiedTokenCache {
+    private final Cache<ByteBuffer, VerifiedToken> cache;
+    private final Timer verification;
+
+    public VerifiedTokenCache(MeterRegistry meterRegistry,
+                              @Value("${security.token-cache.max-size}") long maxSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new UntilTokenExpiry())
+                .recordStats()
+                .build();
+        this.verification = Timer.builder("security.jwt.verification")
+                .description("Full JWT decode and signature verification on token cache misses")
+                .register(meterRegistry);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwt");
+    }
+
+    public VerifiedToken getIfPresent(ByteBuffer digest) {
+        return cache.getIfPresent(digest);
+    }
+
+    public void put(ByteBuffer digest, JwtAuthenticationToken authentication) {
+        // Без exp токен не кэшируется: неизвестно, до какого момента он действителен
+        if (authentication.getToken().getExpiresAt() != null) {
+            cache.put(digest, VerifiedToken.of(authentication));
+        }
+    }
+
+    public Timer verificationTimer() {
+        return verification;
+    }
+
+    public static ByteBuffer digest(String token) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    /**
+     * Неизменяемая часть проверенной аутентификации; {@code roles} есть только у {@link RoleSetAuthenticationToken}.
+     */
+    public record VerifiedToken(Jwt jwt, List<GrantedAuthority> authorities, String name, RoleSet roles) {
+
+        static VerifiedToken of(JwtAuthenticationToken authentication) {
+            RoleSet roles = authentication instanceof RoleSetAuthenticationToken roleSetAuthentication
+                    ? roleSetAuthentication.getRoles()
+                    : null;
+            return new VerifiedToken(authentication.getToken(), List.copyOf(authentication.getAuthorities()),
+                    authentication.getName(), roles);
+        }
+
+        /**
+         * @return новая аутентификация для текущего запроса с его {@code details}
+         */
+        public JwtAuthenticationToken toAuthentication(Object details) {
+            JwtAuthenticationToken authentication = roles != null
+                    ? new RoleSetAuthenticationToken(jwt, authorities, roles)
+                    : new JwtAuthenticationToken(jwt, authorities, name);
+            authentication.setDetails(details);
+            return authentication;
+        }
+    }
+
+    private static final class UntilTokenExpiry implements Expiry<ByteBuffer, VerifiedToken> {
+
+        @Override
+        public long expireAfterCreate(ByteBuffer key, VerifiedToken value, long currentTime) {
+            Instant expiresAt = value.jwt().getExpiresAt();
+            return Math.max(0, Duration.between(Instant.now(), expiresAt).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(ByteBuffer key, VerifiedToken value,
+                                      long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(ByteBuffer key, VerifiedToken value,
+                                    long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.itm.space.backendresources.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import com.itm.space.backendresources.api.request.UserInclude;
+import com.itm.space.backendresources.api.request.UserRequest;
+import com.itm.space.backendresources.api.response.UserBatchItemResponse;
+import com.itm.space.backendresources.api.response.UserBulkResultResponse;
+import com.itm.space.backendresources.api.response.UserResponse;
+import com.itm.space.backendresources.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Кэш поверх {@link UserServiceImpl}. Последняя загруженная версия пользователя дополнительно хранится
+ * {@code stale-ttl}: пока circuit breaker Keycloak разомкнут, чтение отдаёт её вместо 503.
+ */
+@Slf4j
+@Primary
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(prefix = "users.cache", name = "enabled", havingValue = "true")
+public class CachingUserService implements UserService {
+    private final UserService delegate;
+    private final UserBatchResolver userBatchResolver;
+    private final ExecutorService refreshExecutor;
+    private final LoadingCache<UUID, UserResponse> cache;
+    private final Cache<UUID, UserResponse> lastKnown;
+    private final StatsCounter stats = new ConcurrentStatsCounter();
+    private final Counter staleReads;
+
+    public CachingUserService(UserServiceImpl delegate,
+                              UserBatchResolver userBatchResolver,
+                              MeterRegistry meterRegistry,
+                              @Value("${users.cache.maximum-size}") long maximumSize,
+                              @Value("${users.cache.expire-after-write}") Duration expireAfterWrite,
+                              @Value("${users.cache.refresh-after-write}") Duration refreshAfterWrite,
+                              @Value("${users.cache.refresh-threads}") int refreshThreads,
+                              @Value("${users.cache.stale-ttl}") Duration staleTtl) {
+        this.delegate = delegate;
+        this.userBatchResolver = userBatchResolver;
+        this.refreshExecutor = Executors.newFixedThreadPool(refreshThreads,
+                new CustomizableThreadFactory("user-cache-refresh-"));
+        this.lastKnown = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(staleTtl)
+                .build();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .refreshAfterWrite(refreshAfterWrite)
+                .executor(refreshExecutor)
+                .recordStats(() -> stats)
+                .build(this::load);
+        this.staleReads = Counter.builder("users.cache.stale-reads")
+                .description("Lookups answered from the last known value while Keycloak was unavailable")
+                .register(meterRegistry);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "users");
+        log.info("User cache enabled: maximumSize={}, expireAfterWrite={}, refreshAfterWrite={}",
+                maximumSize, expireAfterWrite, refreshAfterWrite);
+    }
+
+    @Override
+    public UUID createUser(UserRequest userRequest) {
+        UUID id = delegate.createUser(userRequest);
+        // Ответ, собранный из запроса, не содержит ролей и групп по умолчанию, поэтому кэш прогревается загрузкой
+        // из Keycloak в фоне: создание её не ждёт, а первое чтение, скорее всего, уже попадёт в кэш
+        cache.refresh(id);
+        return id;
+    }
+
+    @Override
+    public List<UserBulkResultResponse> createUsers(List<UserRequest> userRequests) {
+        return delegate.createUsers(userRequests);
+    }
+
+    @Override
+    public UserResponse getUserById(UUID id) {
+        return getCached(id);
+    }
+
+    @Override
+    public UserResponse getUserById(UUID id, Set<UserInclude> include) {
+        if (include.containsAll(UserInclude.ALL)) {
+            return getCached(id);
+        }
+        UserResponse cached = cache.getIfPresent(id);
+        if (cached != null) {
+            return project(cached, include);
+        }
+        try {
+            return delegate.getUserById(id, include);
+        } catch (ServiceUnavailableException ex) {
+            return project(lastKnownOrThrow(id, ex), include);
+        }
+    }
+
+    @Override
+    public List<UserBatchItemResponse> getUsersByIds(List<UUID> ids) {
+        return userBatchResolver.resolve(ids, this::getCached);
+    }
+
+    private UserResponse load(UUID id) {
+        UserResponse user = delegate.getUserById(id);
+        lastKnown.put(id, user);
+        return user;
+    }
+
+    // Промах грузится не через cache.get: там ожидающие того же id блокируются на загрузке без ограничения.
+    // Одновременные промахи объединяет SingleFlight в delegate, и каждый ждёт не дольше своего дедлайна.
+    // Статистику загрузки, которую иначе вёл бы cache.get, пишем сами
+    private UserResponse getCached(UUID id) {
+        UserResponse cached = cache.getIfPresent(id);
+        if (cached != null) {
+            return cached;
+        }
+        long started = System.nanoTime();
+        UserResponse user;
+        try {
+            user = load(id);
+        } catch (RuntimeException ex) {
+            stats.recordLoadFailure(System.nanoTime() - started);
+            if (ex instanceof ServiceUnavailableException unavailable) {
+                return lastKnownOrThrow(id, unavailable);
+            }
+            throw ex;
+        }
+        stats.recordLoadSuccess(System.nanoTime() - started);
+        // Пока шла загрузка, запись могли записать фоновое обновление или прогрев после создания: её не затираем
+        UserResponse current = cache.asMap().putIfAbsent(id, user);
+        return current != null ? current : user;
+    }
+
+    private UserResponse lastKnownOrThrow(UUID id, ServiceUnavailableException ex) {
+        UserResponse user = lastKnown.getIfPresent(id);
+        if (user == null) {
+            throw ex;
+        }
+        staleReads.increment();
+        log.debug("Serving last known user {} while Keycloak is unavailable", id);
+        return user;
+    }
+
+    private static UserResponse project(UserResponse user, Set<UserInclude> include) {
+        UserResponse projected = new UserResponse(user.getFirstName(), user.getLastName(), user.getEmail(),
+                include.contains(UserInclude.ROLES) ? user.getRoles() : null,
+                include.contains(UserInclude.GROUPS) ? user.getGroups() : null);
+        if (include.containsAll(UserInclude.ALL)) {
+            projected.setEffectiveRoles(user.getEffectiveRoles());
+        }
+        return projected;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+}
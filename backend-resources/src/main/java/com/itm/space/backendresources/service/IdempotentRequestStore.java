@@ -0,0 +1,93 @@
+package com.itm.space.backendresources.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.itm.space.backendresources.exception.BackendResourcesException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Хранит первый результат запроса с заголовком Idempotency-Key.
+ * Повтор с тем же ключом получает сохранённый результат без обращения к Keycloak,
+ * а одновременный дубликат ждёт завершения первого выполнения.
+ * Ошибки 5xx не сохраняются, чтобы повтор после сбоя мог выполниться заново.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class IdempotentRequestStore {
+    private final Cache<String, Execution> executions;
+
+    public IdempotentRequestStore(@Value("${users.idempotency.max-keys}") long maxKeys,
+                                  @Value("${users.idempotency.ttl}") Duration ttl) {
+        this.executions = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Object request, Supplier<T> action) {
+        Execution execution = new Execution(fingerprint(request), new CompletableFuture<>());
+        Execution existing = executions.asMap().putIfAbsent(key, execution);
+        if (existing != null) {
+            if (!Arrays.equals(existing.fingerprint, execution.fingerprint)) {
+                throw new BackendResourcesException("Idempotency key was already used for a different request",
+                        HttpStatus.UNPROCESSABLE_ENTITY);
+            }
+            return (T) await(existing);
+        }
+        try {
+            T result = action.get();
+            execution.outcome.complete(result);
+            return result;
+        } catch (BackendResourcesException ex) {
+            if (ex.getHttpStatus() == null || ex.getHttpStatus().is5xxServerError()) {
+                executions.asMap().remove(key, execution);
+            }
+            execution.outcome.completeExceptionally(ex);
+            throw ex;
+        } catch (Throwable ex) {
+            // Включая Error: иначе дубликаты ждали бы незавершённый outcome, а ключ оставался бы занятым до ttl
+            executions.asMap().remove(key, execution);
+            execution.outcome.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    private static Object await(Execution execution) {
+        try {
+            return execution.outcome.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new BackendResourcesException("Interrupted while waiting for the original request",
+                    HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new BackendResourcesException(ex.getCause().getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private static byte[] fingerprint(Object request) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(String.valueOf(request).getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private record Execution(byte[] fingerprint, CompletableFuture<Object> outcome) {
+    }
+}
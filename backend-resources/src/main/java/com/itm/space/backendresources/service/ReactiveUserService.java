@@ -0,0 +1,22 @@
+package com.itm.space.backendresources.service;
+
+import com.itm.space.backendresources.api.request.UserInclude;
+import com.itm.space.backendresources.api.request.UserRequest;
+import com.itm.space.backendresources.api.response.UserBatchItemResponse;
+import com.itm.space.backendresources.api.response.UserResponse;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+public interface ReactiveUserService {
+
+    Mono<UUID> createUser(UserRequest userRequest);
+
+    Mono<UserResponse> getUserById(UUID id);
+
+    Mono<UserResponse> getUserById(UUID id, Set<UserInclude> include);
+
+    Mono<List<UserBatchItemResponse>> getUsersByIds(List<UUID> ids);
+}
@@ -0,0 +1,162 @@
+package com.itm.space.backendresources.service;
+
+import com.itm.space.backendresources.api.request.UserInclude;
+import com.itm.space.backendresources.api.request.UserRequest;
+import com.itm.space.backendresources.api.response.UserBatchItemResponse;
+import com.itm.space.backendresources.api.response.UserResponse;
+import com.itm.space.backendresources.exception.BackendResourcesException;
+import com.itm.space.backendresources.mapper.UserMapper;
+import com.itm.space.backendresources.role.RealmRoleGraph;
+import lombok.extern.slf4j.Slf4j;
+import org.keycloak.representations.idm.GroupRepresentation;
+import org.keycloak.representations.idm.RoleRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Неблокирующая реализация операций над пользователями поверх admin REST API Keycloak.
+ * Запросы к Keycloak идут через {@link WebClient} на Reactor Netty, поэтому ожидание ответа
+ * не занимает ни одного потока.
+ */
+@Slf4j
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveUserServiceImpl implements ReactiveUserService {
+    private static final ParameterizedTypeReference<List<RoleRepresentation>> ROLE_LIST =
+            new ParameterizedTypeReference<>() {
+            };
+    private static final ParameterizedTypeReference<List<GroupRepresentation>> GROUP_LIST =
+            new ParameterizedTypeReference<>() {
+            };
+
+    private final WebClient keycloakWebClient;
+    private final UserMapper userMapper;
+    private final RealmRoleGraph realmRoleGraph;
+    private final Duration lookupTimeout;
+    private final int batchMaxSize;
+    private final int batchParallelism;
+
+    public ReactiveUserServiceImpl(@Qualifier("keycloakWebClient") WebClient keycloakWebClient,
+                                   UserMapper userMapper,
+                                   RealmRoleGraph realmRoleGraph,
+                                   @Value("${keycloak.lookup-timeout}") Duration lookupTimeout,
+                                   @Value("${users.batch.max-size}") int batchMaxSize,
+                                   @Value("${users.batch.parallelism}") int batchParallelism) {
+        this.keycloakWebClient = keycloakWebClient;
+        this.userMapper = userMapper;
+        this.realmRoleGraph = realmRoleGraph;
+        this.lookupTimeout = lookupTimeout;
+        this.batchMaxSize = batchMaxSize;
+        this.batchParallelism = batchParallelism;
+    }
+
+    @Override
+    public Mono<UUID> createUser(UserRequest userRequest) {
+        return keycloakWebClient.post()
+                .uri("/users")
+                .bodyValue(userMapper.userRequestToUserRepresentation(userRequest))
+                .retrieve()
+                .toBodilessEntity()
+                .map(response -> createdId(response.getHeaders().getLocation()))
+                .doOnNext(userId -> log.info("Created UserId: {}", userId))
+                .onErrorMap(ex -> toBackendException("createUser", ex));
+    }
+
+    @Override
+    public Mono<UserResponse> getUserById(UUID id) {
+        return getUserById(id, UserInclude.ALL);
+    }
+
+    @Override
+    public Mono<UserResponse> getUserById(UUID id, Set<UserInclude> include) {
+        Mono<UserRepresentation> user = keycloakWebClient.get()
+                .uri("/users/{id}", id)
+                .retrieve()
+                .bodyToMono(UserRepresentation.class);
+        Mono<Optional<List<RoleRepresentation>>> roles = include.contains(UserInclude.ROLES)
+                ? keycloakWebClient.get().uri("/users/{id}/role-mappings/realm", id)
+                        .retrieve().bodyToMono(ROLE_LIST).map(Optional::of)
+                : Mono.just(Optional.empty());
+        Mono<Optional<List<GroupRepresentation>>> groups = include.contains(UserInclude.GROUPS)
+                ? keycloakWebClient.get().uri("/users/{id}/groups", id)
+                        .retrieve().bodyToMono(GROUP_LIST).map(Optional::of)
+                : Mono.just(Optional.empty());
+        return Mono.zip(user, roles, groups)
+                .map(result -> toUserResponse(result.getT1(), result.getT2().orElse(null), result.getT3().orElse(null)))
+                .timeout(lookupTimeout)
+                .onErrorMap(ex -> toBackendException("getUserById", ex));
+    }
+
+    @Override
+    public Mono<List<UserBatchItemResponse>> getUsersByIds(List<UUID> ids) {
+        if (ids.size() > batchMaxSize) {
+            return Mono.error(new BackendResourcesException("At most " + batchMaxSize + " ids are allowed per request",
+                    HttpStatus.BAD_REQUEST));
+        }
+        return Flux.fromIterable(ids)
+                .flatMapSequential(id -> getUserById(id)
+                        .map(user -> UserBatchItemResponse.found(id, user))
+                        .onErrorResume(BackendResourcesException.class, ex ->
+                                Mono.just(UserBatchItemResponse.failed(id, ex.getHttpStatus(), ex.getMessage()))),
+                        batchParallelism)
+                .collectList();
+    }
+
+    private UserResponse toUserResponse(UserRepresentation user, List<RoleRepresentation> roles,
+                                        List<GroupRepresentation> groups) {
+        UserResponse response = userMapper.userRepresentationToUserResponse(user, roles, groups);
+        if (roles != null && groups != null) {
+            response.setEffectiveRoles(realmRoleGraph.effectiveRoles(roles, groups));
+        }
+        return response;
+    }
+
+    private static UUID createdId(URI location) {
+        if (location == null) {
+            throw new BackendResourcesException("Keycloak did not return the created user location",
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        String path = location.getPath();
+        return UUID.fromString(path.substring(path.lastIndexOf('/') + 1));
+    }
+
+    private static Throwable toBackendException(String operation, Throwable ex) {
+        if (ex instanceof BackendResourcesException) {
+            return ex;
+        }
+        if (ex instanceof WebClientResponseException responseException) {
+            HttpStatus status = HttpStatus.resolve(responseException.getStatusCode().value());
+            log.error("Exception on \"{}\": {}", operation, responseException.getMessage());
+            return new BackendResourcesException(responseException.getMessage(),
+                    status != null ? status : HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        if (ex instanceof TimeoutException) {
+            log.error("Timeout on \"{}\": {}", operation, ex.getMessage());
+            return new BackendResourcesException(ex.getMessage(), HttpStatus.GATEWAY_TIMEOUT);
+        }
+        if (ex instanceof WebClientRequestException) {
+            log.error("Exception on \"{}\": ", operation, ex);
+            return new BackendResourcesException(ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        log.error("Exception on \"{}\": ", operation, ex);
+        return new BackendResourcesException(ex.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+}
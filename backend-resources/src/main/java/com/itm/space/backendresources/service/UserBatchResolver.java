@@ -0,0 +1,121 @@
+package com.itm.space.backendresources.service;
+
+import com.itm.space.backendresources.api.response.UserBatchItemResponse;
+import com.itm.space.backendresources.api.response.UserResponse;
+import com.itm.space.backendresources.exception.BackendResourcesException;
+import com.itm.space.backendresources.util.FanOut;
+import com.itm.space.backendresources.util.RequestDeadline;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * Разрешает список идентификаторов пользователей с ограниченным параллелизмом.
+ * На каждый запрос запускается не более {@code parallelism} воркеров в отдельном пуле, вызывающий поток только ждёт их
+ * не дольше {@code timeout}; сам он разрешает батч, лишь когда пул не принял ни одного воркера.
+ * После таймаута воркеры не берут новые id, а незавершённые получают 504.
+ * Ошибка по отдельному id попадает в его элемент ответа и не прерывает весь батч.
+ */
+@Slf4j
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class UserBatchResolver {
+    private final ThreadPoolExecutor batchExecutor;
+    private final int maxSize;
+    private final int parallelism;
+    private final Duration timeout;
+
+    public UserBatchResolver(@Value("${users.batch.max-size}") int maxSize,
+                             @Value("${users.batch.parallelism}") int parallelism,
+                             @Value("${users.batch.pool-size}") int poolSize,
+                             @Value("${users.batch.timeout}") Duration timeout) {
+        this.maxSize = maxSize;
+        this.parallelism = parallelism;
+        this.timeout = timeout;
+        this.batchExecutor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(poolSize), new CustomizableThreadFactory("user-batch-"));
+    }
+
+    public List<UserBatchItemResponse> resolve(List<UUID> ids, Function<UUID, UserResponse> lookup) {
+        if (ids.size() > maxSize) {
+            throw new BackendResourcesException("At most " + maxSize + " ids are allowed per request",
+                    HttpStatus.BAD_REQUEST);
+        }
+        Duration budget = RequestDeadline.remaining(timeout);
+        long deadline = System.nanoTime() + budget.toNanos();
+        AtomicReferenceArray<UserBatchItemResponse> results = new AtomicReferenceArray<>(ids.size());
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            int index;
+            while (System.nanoTime() - deadline < 0 && !RequestDeadline.isExpired()
+                    && !Thread.currentThread().isInterrupted()
+                    && (index = next.getAndIncrement()) < ids.size()) {
+                results.set(index, resolveOne(ids.get(index), lookup));
+            }
+        };
+        try (FanOut fanOut = new FanOut(batchExecutor)) {
+            int workers = 0;
+            for (int i = 0; i < Math.min(parallelism, ids.size()); i++) {
+                try {
+                    fanOut.fork(Executors.callable(RequestDeadline.propagate(worker)));
+                    workers++;
+                } catch (RejectedExecutionException ex) {
+                    log.warn("Batch executor saturated, resolving the batch with {} worker(s)", Math.max(workers, 1));
+                    break;
+                }
+            }
+            if (workers == 0) {
+                worker.run();
+            }
+            fanOut.join(Duration.ofNanos(Math.max(0, deadline - System.nanoTime())));
+        } catch (TimeoutException ex) {
+            log.warn("Batch lookup of {} ids timed out after {}", ids.size(), budget);
+        } catch (ExecutionException ex) {
+            log.error("Exception on \"getUsersByIds\": ", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<UserBatchItemResponse> response = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            UserBatchItemResponse item = results.get(i);
+            response.add(item != null ? item
+                    : UserBatchItemResponse.failed(ids.get(i), HttpStatus.GATEWAY_TIMEOUT, "Lookup was not completed"));
+        }
+        return response;
+    }
+
+    private UserBatchItemResponse resolveOne(UUID id, Function<UUID, UserResponse> lookup) {
+        try {
+            return UserBatchItemResponse.found(id, lookup.apply(id));
+        } catch (BackendResourcesException ex) {
+            return UserBatchItemResponse.failed(id, ex.getHttpStatus(), ex.getMessage());
+        } catch (RuntimeException ex) {
+            return UserBatchItemResponse.failed(id, HttpStatus.INTERNAL_SERVER_ERROR, ex.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        batchExecutor.shutdownNow();
+    }
+}
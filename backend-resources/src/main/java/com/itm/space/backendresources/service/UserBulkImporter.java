@@ -0,0 +1,163 @@
+package com.itm.space.backendresources.service;
+
+import com.itm.space.backendresources.api.response.UserBulkResultResponse;
+import com.itm.space.backendresources.api.response.UserBulkResultResponse.Status;
+import com.itm.space.backendresources.exception.BackendResourcesException;
+import com.itm.space.backendresources.keycloak.KeycloakUserGateway;
+import com.itm.space.backendresources.util.FanOut;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.keycloak.partialimport.ImportAction;
+import org.keycloak.partialimport.PartialImportResult;
+import org.keycloak.partialimport.PartialImportResults;
+import org.keycloak.representations.idm.PartialImportRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Массовое создание пользователей через partial import реалма.
+ * Пользователи отправляются чанками по {@code chunk-size}, не более {@code concurrency} чанков одновременно.
+ * Уже существующие в Keycloak пользователи пропускаются (политика SKIP) и возвращаются как CONFLICT с их id.
+ */
+@Slf4j
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class UserBulkImporter {
+    private final KeycloakUserGateway keycloakUserGateway;
+    private final ThreadPoolExecutor importExecutor;
+    private final int maxSize;
+    private final int chunkSize;
+    private final int concurrency;
+    private final Duration timeout;
+
+    public UserBulkImporter(KeycloakUserGateway keycloakUserGateway,
+                            @Value("${users.bulk-create.max-size}") int maxSize,
+                            @Value("${users.bulk-create.chunk-size}") int chunkSize,
+                            @Value("${users.bulk-create.concurrency}") int concurrency,
+                            @Value("${users.bulk-create.timeout}") Duration timeout) {
+        this.keycloakUserGateway = keycloakUserGateway;
+        this.maxSize = maxSize;
+        this.chunkSize = chunkSize;
+        this.concurrency = concurrency;
+        this.timeout = timeout;
+        this.importExecutor = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(concurrency), new CustomizableThreadFactory("user-import-"));
+    }
+
+    public List<UserBulkResultResponse> importUsers(List<UserRepresentation> users) {
+        if (users.size() > maxSize) {
+            throw new BackendResourcesException("At most " + maxSize + " users are allowed per request",
+                    HttpStatus.BAD_REQUEST);
+        }
+        Map<UserRepresentation, UserBulkResultResponse> results = new IdentityHashMap<>();
+        List<UserRepresentation> unique = new ArrayList<>(users.size());
+        Set<String> usernames = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        for (UserRepresentation user : users) {
+            if (!usernames.add(user.getUsername().toLowerCase(Locale.ROOT))
+                    || !emails.add(user.getEmail().toLowerCase(Locale.ROOT))) {
+                results.put(user, new UserBulkResultResponse(user.getUsername(), Status.SKIPPED, null,
+                        "Duplicate username or email in request"));
+            } else {
+                unique.add(user);
+            }
+        }
+
+        List<List<UserRepresentation>> chunks = new ArrayList<>();
+        for (int from = 0; from < unique.size(); from += chunkSize) {
+            chunks.add(unique.subList(from, Math.min(from + chunkSize, unique.size())));
+        }
+        AtomicReferenceArray<Map<String, UserBulkResultResponse>> chunkResults =
+                new AtomicReferenceArray<>(chunks.size());
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            int index;
+            while ((index = next.getAndIncrement()) < chunks.size() && !Thread.currentThread().isInterrupted()) {
+                chunkResults.set(index, importChunk(chunks.get(index)));
+            }
+        };
+        try (FanOut fanOut = new FanOut(importExecutor)) {
+            for (int i = 0; i < Math.min(concurrency, chunks.size()); i++) {
+                try {
+                    fanOut.fork(Executors.callable(worker));
+                } catch (RejectedExecutionException ex) {
+                    log.warn("Import executor saturated, importing the rest with {} worker(s)", i);
+                    if (i == 0) {
+                        throw new BackendResourcesException("Too many concurrent imports",
+                                HttpStatus.SERVICE_UNAVAILABLE);
+                    }
+                    break;
+                }
+            }
+            fanOut.join(timeout);
+        } catch (TimeoutException ex) {
+            log.warn("Import of {} users timed out after {}", unique.size(), timeout);
+        } catch (ExecutionException ex) {
+            log.error("Exception on \"createUsers\": ", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (int i = 0; i < chunks.size(); i++) {
+            Map<String, UserBulkResultResponse> imported = chunkResults.get(i);
+            for (UserRepresentation user : chunks.get(i)) {
+                UserBulkResultResponse result = imported != null ? imported.get(user.getUsername()) : null;
+                results.put(user, result != null ? result
+                        : new UserBulkResultResponse(user.getUsername(), Status.FAILED, null, "Import was not completed"));
+            }
+        }
+        return users.stream().map(results::get).toList();
+    }
+
+    private Map<String, UserBulkResultResponse> importChunk(List<UserRepresentation> chunk) {
+        PartialImportRepresentation partialImport = new PartialImportRepresentation();
+        partialImport.setIfResourceExists(PartialImportRepresentation.Policy.SKIP.name());
+        partialImport.setUsers(chunk);
+        Map<String, UserBulkResultResponse> imported = new HashMap<>();
+        try {
+            PartialImportResults results = keycloakUserGateway.partialImport(partialImport);
+            Map<String, String> requestedNames = new HashMap<>();
+            chunk.forEach(user -> requestedNames.put(user.getUsername().toLowerCase(Locale.ROOT), user.getUsername()));
+            for (PartialImportResult result : results.getResults()) {
+                String username = requestedNames.get(result.getResourceName().toLowerCase(Locale.ROOT));
+                if (username != null) {
+                    Status status = result.getAction() == ImportAction.ADDED ? Status.CREATED : Status.CONFLICT;
+                    imported.put(username, new UserBulkResultResponse(username, status, result.getId(), null));
+                }
+            }
+        } catch (RuntimeException ex) {
+            log.error("Exception on \"createUsers\": ", ex);
+            chunk.forEach(user -> imported.put(user.getUsername(),
+                    new UserBulkResultResponse(user.getUsername(), Status.FAILED, null, ex.getMessage())));
+        }
+        return imported;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        importExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,224 @@
+package com.itm.space.backendresources.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.itm.space.backendresources.api.request.UserRequest;
+import com.itm.space.backendresources.api.response.UserCreationJobResponse;
+import com.itm.space.backendresources.api.response.UserCreationJobResponse.Status;
+import com.itm.space.backendresources.exception.BackendResourcesException;
+import com.itm.space.backendresources.outbox.JournaledUserCreation;
+import com.itm.space.backendresources.outbox.UserCreationJournal;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Асинхронное создание пользователей: запрос ставится в ограниченную очередь и сразу получает id задачи.
+ * При переполнении очереди запрос отклоняется со статусом 429, а не занимает поток Tomcat.
+ * Если включён outbox, заявка сначала записывается в журнал на диске, а после рестарта
+ * незавершённые заявки отправляются повторно под теми же id.
+ */
+@Slf4j
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class UserCreationJobService {
+    private final UserService userService;
+    private final UserCreationJournal journal;
+    private final ThreadPoolExecutor jobExecutor;
+    private final Cache<UUID, UserCreationJob> jobs;
+    private final Counter rejected;
+
+    public UserCreationJobService(UserService userService,
+                                  ObjectProvider<UserCreationJournal> journal,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${users.create-jobs.workers}") int workers,
+                                  @Value("${users.create-jobs.queue-capacity}") int queueCapacity,
+                                  @Value("${users.create-jobs.max-retained}") long maxRetained,
+                                  @Value("${users.create-jobs.retention}") Duration retention) {
+        this.userService = userService;
+        this.journal = journal.getIfAvailable();
+        this.jobExecutor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("user-create-job-"));
+        this.jobs = Caffeine.newBuilder()
+                .maximumSize(maxRetained)
+                .expireAfterWrite(retention)
+                .build();
+        this.rejected = Counter.builder("users.create.jobs.rejected")
+                .description("Creation jobs rejected because the queue was full")
+                .register(meterRegistry);
+        Gauge.builder("users.create.jobs.queued", jobExecutor, executor -> executor.getQueue().size())
+                .description("Creation jobs waiting for a worker")
+                .register(meterRegistry);
+    }
+
+    public UserCreationJobResponse submit(UserRequest userRequest) {
+        if (jobExecutor.getQueue().remainingCapacity() == 0) {
+            rejected.increment();
+            throw new BackendResourcesException("User creation queue is full", HttpStatus.TOO_MANY_REQUESTS);
+        }
+        UserCreationJob job = new UserCreationJob(UUID.randomUUID(), userRequest);
+        if (journal != null) {
+            appendToJournal(job);
+        }
+        jobs.put(job.id, job);
+        try {
+            jobExecutor.execute(() -> run(job));
+        } catch (RejectedExecutionException ex) {
+            jobs.invalidate(job.id);
+            if (journal != null) {
+                journal.markDone(job.id);
+            }
+            rejected.increment();
+            throw new BackendResourcesException("User creation queue is full", HttpStatus.TOO_MANY_REQUESTS);
+        }
+        return job.toResponse();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void replayJournal() {
+        if (journal == null) {
+            return;
+        }
+        Deque<JournaledUserCreation> pending = new ArrayDeque<>(journal.takePendingEntries());
+        if (pending.isEmpty()) {
+            return;
+        }
+        log.info("Replaying {} pending user creation(s) from the outbox", pending.size());
+        Thread replay = new Thread(() -> {
+            // Отправленная заявка сразу убирается из очереди, дальше её запрос хранит только задача
+            JournaledUserCreation entry;
+            while ((entry = pending.poll()) != null) {
+                UserCreationJob job = new UserCreationJob(entry.jobId(), entry.request());
+                jobs.put(job.id, job);
+                while (true) {
+                    try {
+                        jobExecutor.execute(() -> run(job));
+                        break;
+                    } catch (RejectedExecutionException ex) {
+                        if (jobExecutor.isShutdown()) {
+                            return;
+                        }
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+                    }
+                }
+            }
+        }, "user-outbox-replay");
+        replay.setDaemon(true);
+        replay.start();
+    }
+
+    public UserCreationJobResponse getJob(UUID id) {
+        UserCreationJob job = jobs.getIfPresent(id);
+        if (job == null) {
+            throw new BackendResourcesException("Job not found", HttpStatus.NOT_FOUND);
+        }
+        return job.toResponse();
+    }
+
+    private void appendToJournal(UserCreationJob job) {
+        try {
+            journal.append(job.id, job.request);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new BackendResourcesException("Interrupted while writing to the outbox", HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (RuntimeException ex) {
+            log.error("Exception on writing user creation job {} to the outbox: ", job.id, ex);
+            throw new BackendResourcesException("Outbox is unavailable", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    // Из журнала убираются только заявки с окончательным итогом; остальные повторятся после рестарта
+    private void run(UserCreationJob job) {
+        job.status = Status.RUNNING;
+        try {
+            UUID userId = userService.createUser(job.request);
+            job.complete(Status.SUCCEEDED, userId, null, null);
+            markDone(job);
+        } catch (BackendResourcesException ex) {
+            job.complete(Status.FAILED, null, ex.getHttpStatus(), ex.getMessage());
+            if (isDefinitive(ex.getHttpStatus())) {
+                markDone(job);
+            } else {
+                log.warn("User creation job {} failed with {}, keeping it in the outbox", job.id, ex.getHttpStatus());
+            }
+        } catch (RuntimeException ex) {
+            log.error("Exception on user creation job {}: ", job.id, ex);
+            job.complete(Status.FAILED, null, HttpStatus.INTERNAL_SERVER_ERROR, ex.getMessage());
+        }
+    }
+
+    private void markDone(UserCreationJob job) {
+        if (journal != null) {
+            journal.markDone(job.id);
+        }
+    }
+
+    // 409, 400 и другие ответы 4xx повтор не изменит, кроме таймаута и ограничения частоты
+    private static boolean isDefinitive(HttpStatus status) {
+        return status != null && status.is4xxClientError()
+                && status != HttpStatus.REQUEST_TIMEOUT && status != HttpStatus.TOO_MANY_REQUESTS;
+    }
+
+    // Задачи из очереди не выполняются и не отмечаются: их заявки остаются в журнале
+    @PreDestroy
+    public void shutdown() {
+        List<Runnable> drained = jobExecutor.shutdownNow();
+        if (!drained.isEmpty()) {
+            log.info("{} queued user creation job(s) left in the outbox on shutdown", drained.size());
+        }
+    }
+
+    private static final class UserCreationJob {
+        private final UUID id;
+        private final String username;
+        private final Instant submittedAt = Instant.now();
+        private volatile UserRequest request;
+        private volatile Status status = Status.QUEUED;
+        private volatile UUID userId;
+        private volatile HttpStatus errorStatus;
+        private volatile String error;
+        private volatile Instant completedAt;
+
+        private UserCreationJob(UUID id, UserRequest request) {
+            this.id = id;
+            this.username = request.getUsername();
+            this.request = request;
+        }
+
+        private void complete(Status status, UUID userId, HttpStatus errorStatus, String error) {
+            this.userId = userId;
+            this.errorStatus = errorStatus;
+            this.error = error;
+            this.completedAt = Instant.now();
+            this.request = null;
+            this.status = status;
+        }
+
+        private UserCreationJobResponse toResponse() {
+            return new UserCreationJobResponse(id, username, status, userId,
+                    errorStatus != null ? errorStatus.value() : null, error, submittedAt, completedAt);
+        }
+    }
+}
@@ -1,14 +1,25 @@
 package com.itm.space.backendresources.service;
 
+import com.itm.space.backendresources.api.request.UserInclude;
 import com.itm.space.backendresources.api.request.UserRequest;
+import com.itm.space.backendresources.api.response.UserBatchItemResponse;
+import com.itm.space.backendresources.api.response.UserBulkResultResponse;
 import com.itm.space.backendresources.api.response.UserResponse;
 
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 public interface UserService {
 
-    void createUser(UserRequest userRequest);
+    UUID createUser(UserRequest userRequest);
+
+    List<UserBulkResultResponse> createUsers(List<UserRequest> userRequests);
 
     UserResponse getUserById(UUID id);
 
+    UserResponse getUserById(UUID id, Set<UserInclude> include);
+
+    List<UserBatchItemResponse> getUsersByIds(List<UUID> ids);
+
 }
@@ -1,83 +1,171 @@
 package com.itm.space.backendresources.service;
 
+import com.itm.space.backendresources.api.request.UserInclude;
 import com.itm.space.backendresources.api.request.UserRequest;
+import com.itm.space.backendresources.api.response.UserBatchItemResponse;
+import com.itm.space.backendresources.api.response.UserBulkResultResponse;
 import com.itm.space.backendresources.api.response.UserResponse;
 import com.itm.space.backendresources.exception.BackendResourcesException;
+import com.itm.space.backendresources.keycloak.KeycloakUserGateway;
 import com.itm.space.backendresources.mapper.UserMapper;
+import com.itm.space.backendresources.role.RealmRoleGraph;
+import com.itm.space.backendresources.util.DeadlineExceededException;
+import com.itm.space.backendresources.util.FanOut;
+import com.itm.space.backendresources.util.RequestDeadline;
+import com.itm.space.backendresources.util.SingleFlight;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.keycloak.admin.client.CreatedResponseUtil;
-import org.keycloak.admin.client.Keycloak;
-import org.keycloak.representations.idm.CredentialRepresentation;
 import org.keycloak.representations.idm.GroupRepresentation;
 import org.keycloak.representations.idm.RoleRepresentation;
 import org.keycloak.representations.idm.UserRepresentation;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
+import javax.ws.rs.ProcessingException;
 import javax.ws.rs.WebApplicationException;
-import javax.ws.rs.core.Response;
+import java.time.Duration;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 
 @Slf4j
 @Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequiredArgsConstructor
 public class UserServiceImpl implements UserService {
-    private final Keycloak keycloakClient;
+    private final KeycloakUserGateway keycloakUserGateway;
     private final UserMapper userMapper;
+    private final ExecutorService keycloakExecutor;
+    private final MeterRegistry meterRegistry;
+    private final UserBatchResolver userBatchResolver;
+    private final UserBulkImporter userBulkImporter;
+    private final RealmRoleGraph realmRoleGraph;
+    private final SingleFlight<LookupKey, UserResponse> lookups = new SingleFlight<>();
 
-    @Value("${keycloak.realm}")
-    private String realm;
+    @Value("${keycloak.lookup-timeout}")
+    private Duration lookupTimeout;
 
-    public void createUser(UserRequest userRequest) {
-        CredentialRepresentation password = preparePasswordRepresentation(userRequest.getPassword());
-        UserRepresentation user = prepareUserRepresentation(userRequest, password);
+    @PostConstruct
+    public void registerMetrics() {
+        FunctionCounter.builder("users.lookup.requests", lookups, SingleFlight::originatingCount)
+                .tag("type", "originating")
+                .description("Lookups that issued their own Keycloak calls")
+                .register(meterRegistry);
+        FunctionCounter.builder("users.lookup.requests", lookups, SingleFlight::coalescedCount)
+                .tag("type", "coalesced")
+                .description("Lookups that joined an in-flight call for the same id")
+                .register(meterRegistry);
+    }
+
+    public UUID createUser(UserRequest userRequest) {
+        UserRepresentation user = userMapper.userRequestToUserRepresentation(userRequest);
         try {
-            Response response = keycloakClient.realm(realm).users().create(user);
-            String userId = CreatedResponseUtil.getCreatedId(response);
+            String userId = keycloakUserGateway.createUser(user);
             log.info("Created UserId: {}", userId);
+            return UUID.fromString(userId);
         } catch (WebApplicationException ex) {
             log.error("Exception on \"createUser\": ", ex);
             throw new BackendResourcesException(ex.getMessage(), HttpStatus.resolve(ex.getResponse().getStatus()));
+        } catch (ProcessingException ex) {
+            log.error("Exception on \"createUser\": ", ex);
+            throw new BackendResourcesException(ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
         }
     }
 
+    @Override
+    public List<UserBulkResultResponse> createUsers(List<UserRequest> userRequests) {
+        List<UserRepresentation> users = userRequests.stream()
+                .map(userMapper::userRequestToUserRepresentation)
+                .toList();
+        return userBulkImporter.importUsers(users);
+    }
+
     @Override
     public UserResponse getUserById(UUID id) {
-        UserRepresentation userRepresentation;
-        List<RoleRepresentation> userRoles;
-        List<GroupRepresentation> userGroups;
+        return getUserById(id, UserInclude.ALL);
+    }
+
+    @Override
+    public UserResponse getUserById(UUID id, Set<UserInclude> include) {
+        LookupKey key = new LookupKey(id, Set.copyOf(include));
         try {
-            userRepresentation = keycloakClient.realm(realm).users().get(String.valueOf(id)).toRepresentation();
-            userRoles = keycloakClient.realm(realm)
-                    .users().get(String.valueOf(id)).roles().getAll().getRealmMappings();
-            userGroups = keycloakClient.realm(realm).users().get(String.valueOf(id)).groups();
+            RequestDeadline.checkNotExpired();
+            // Загрузку могут ждать несколько запросов, поэтому её дедлайн - lookup-timeout, а не дедлайн
+            // начавшего её запроса; свой дедлайн каждый запрос применяет к своему ожиданию
+            return lookups.execute(key, () -> RequestDeadline.withDeadline(lookupTimeout, () -> loadUser(key)),
+                    keycloakExecutor, RequestDeadline.remaining(lookupTimeout));
+        } catch (DeadlineExceededException ex) {
+            log.warn("Request deadline passed on \"getUserById\" for {}", id);
+            throw new BackendResourcesException(ex.getMessage(), HttpStatus.GATEWAY_TIMEOUT);
+        } catch (RejectedExecutionException ex) {
+            log.warn("Keycloak executor saturated on \"getUserById\"");
+            throw new BackendResourcesException("Too many concurrent lookups", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    @Override
+    public List<UserBatchItemResponse> getUsersByIds(List<UUID> ids) {
+        return userBatchResolver.resolve(ids, this::getUserById);
+    }
+
+    private UserResponse loadUser(LookupKey key) {
+        UUID id = key.id();
+        try (FanOut fanOut = new FanOut(keycloakExecutor)) {
+            Future<UserRepresentation> userRepresentation =
+                    fanOut.fork(RequestDeadline.propagate(() -> keycloakUserGateway.getUser(id)));
+            Future<List<RoleRepresentation>> userRoles = key.include().contains(UserInclude.ROLES)
+                    ? fanOut.fork(RequestDeadline.propagate(() -> keycloakUserGateway.getUserRealmRoles(id)))
+                    : null;
+            Future<List<GroupRepresentation>> userGroups = key.include().contains(UserInclude.GROUPS)
+                    ? fanOut.fork(RequestDeadline.propagate(() -> keycloakUserGateway.getUserGroups(id)))
+                    : null;
+            // Если ждать перестали все запросы, загрузку прерывают, и FanOut отменяет вызовы при закрытии
+            fanOut.join(RequestDeadline.remaining(lookupTimeout));
+            List<RoleRepresentation> roles = resultOf(userRoles);
+            List<GroupRepresentation> groups = resultOf(userGroups);
+            UserResponse user = userMapper.userRepresentationToUserResponse(userRepresentation.get(), roles, groups);
+            if (roles != null && groups != null) {
+                user.setEffectiveRoles(realmRoleGraph.effectiveRoles(roles, groups));
+            }
+            return user;
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof BackendResourcesException cause) {
+                throw cause;
+            }
+            log.error("Exception on \"getUserById\": ", ex.getCause());
+            if (ex.getCause() instanceof ProcessingException) {
+                throw new BackendResourcesException(ex.getCause().getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            throw new BackendResourcesException(ex.getCause().getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (TimeoutException ex) {
+            log.error("Timeout on \"getUserById\": {}", ex.getMessage());
+            throw new BackendResourcesException(ex.getMessage(), HttpStatus.GATEWAY_TIMEOUT);
+        } catch (RejectedExecutionException ex) {
+            log.warn("Keycloak executor saturated on \"getUserById\"");
+            throw new BackendResourcesException("Too many concurrent lookups", HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new BackendResourcesException("Lookup interrupted", HttpStatus.INTERNAL_SERVER_ERROR);
         } catch (RuntimeException ex) {
             log.error("Exception on \"getUserById\": ", ex);
             throw new BackendResourcesException(ex.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
-        return userMapper.userRepresentationToUserResponse(userRepresentation, userRoles, userGroups);
     }
 
-    private CredentialRepresentation preparePasswordRepresentation(String password) {
-        CredentialRepresentation credentialRepresentation = new CredentialRepresentation();
-        credentialRepresentation.setTemporary(false);
-        credentialRepresentation.setType(CredentialRepresentation.PASSWORD);
-        credentialRepresentation.setValue(password);
-        return credentialRepresentation;
+    private static <T> T resultOf(Future<T> future) throws InterruptedException, ExecutionException {
+        return future != null ? future.get() : null;
     }
 
-    private UserRepresentation prepareUserRepresentation(UserRequest userRequest,
-                                                         CredentialRepresentation credentialRepresentation) {
-        UserRepresentation newUser = new UserRepresentation();
-        newUser.setUsername(userRequest.getUsername());
-        newUser.setEmail(userRequest.getEmail());
-        newUser.setCredentials(List.of(credentialRepresentation));
-        newUser.setEnabled(true);
-        newUser.setFirstName(userRequest.getFirstName());
-        newUser.setLastName(userRequest.getLastName());
-        return newUser;
+    private record LookupKey(UUID id, Set<UserInclude> include) {
     }
 }
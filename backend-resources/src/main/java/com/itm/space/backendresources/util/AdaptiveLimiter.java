@@ -0,0 +1,108 @@
+package com.itm.space.backendresources.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Адаптивный лимит одновременных вызовов по схеме AIMD. Пока вызовы укладываются в {@code latencyTarget},
+ * лимит растёт примерно на единицу за каждые {@code limit} завершённых вызовов; медленный или неудачный
+ * вызов уменьшает его в {@link #BACKOFF_RATIO} раз. Вызовы сверх лимита не ждут, а сразу отклоняются.
+ */
+public final class AdaptiveLimiter {
+    private static final double BACKOFF_RATIO = 0.9;
+
+    public record Settings(int initialLimit, int minLimit, int maxLimit, Duration latencyTarget) {
+    }
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter rejected;
+    private volatile double limit;
+
+    public AdaptiveLimiter(String name, Settings settings, MeterRegistry meterRegistry) {
+        this.minLimit = settings.minLimit();
+        this.maxLimit = settings.maxLimit();
+        this.latencyTargetNanos = settings.latencyTarget().toNanos();
+        this.limit = settings.initialLimit();
+        this.rejected = Counter.builder("concurrency.limiter.rejected")
+                .description("Calls shed because the adaptive concurrency limit was reached")
+                .tag("name", name)
+                .register(meterRegistry);
+        Gauge.builder("concurrency.limiter.limit", this, AdaptiveLimiter::getLimit)
+                .description("Current adaptive concurrency limit")
+                .tag("name", name)
+                .register(meterRegistry);
+        Gauge.builder("concurrency.limiter.in-flight", inFlight, AtomicInteger::get)
+                .description("Calls currently admitted by the adaptive concurrency limiter")
+                .tag("name", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return разрешение на вызов или {@code null}, если лимит исчерпан
+     */
+    public Permit tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                rejected.increment();
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return new Permit(System.nanoTime());
+            }
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    private synchronized void onSample(long latencyNanos, boolean dropped) {
+        if (dropped || latencyNanos > latencyTargetNanos) {
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        } else if (inFlight.get() + 1 >= (int) limit) {
+            // Расти имеет смысл, только когда лимит действительно был занят
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    public final class Permit {
+        private final long startNanos;
+        private boolean released;
+
+        private Permit(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        public void success() {
+            release(false, true);
+        }
+
+        public void dropped() {
+            release(true, true);
+        }
+
+        // Результат не говорит ничего о нагрузке, например вызов отклонён дальше по цепочке
+        public void ignore() {
+            release(false, false);
+        }
+
+        private void release(boolean dropped, boolean sample) {
+            if (released) {
+                return;
+            }
+            released = true;
+            inFlight.decrementAndGet();
+            if (sample) {
+                onSample(System.nanoTime() - startNanos, dropped);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.itm.space.backendresources.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Изолированный лимит одновременных вызовов: не больше {@code maxConcurrent} вызовов выполняются,
+ * не больше {@code maxQueue} ждут своей очереди, и никто не ждёт дольше {@code maxWait}.
+ * Остальные вызовы сразу отклоняются {@link RejectedExecutionException}, а не копятся в потоках.
+ * Ожидание разрешения не выходит за дедлайн текущего запроса ({@link RequestDeadline}).
+ */
+public final class Bulkhead {
+    private final String name;
+    private final int maxConcurrent;
+    private final int maxQueue;
+    private final Duration maxWait;
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Counter queueFullRejections;
+    private final Counter timeoutRejections;
+
+    public Bulkhead(String name, int maxConcurrent, int maxQueue, Duration maxWait, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueue = maxQueue;
+        this.maxWait = maxWait;
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.queueFullRejections = rejections(meterRegistry, "queue-full");
+        this.timeoutRejections = rejections(meterRegistry, "timeout");
+        Gauge.builder("bulkhead.calls.active", this, Bulkhead::activeCalls)
+                .description("Calls currently running inside the bulkhead")
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+        Gauge.builder("bulkhead.calls.queued", queued, AtomicInteger::get)
+                .description("Calls waiting for a bulkhead permit")
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+        Gauge.builder("bulkhead.calls.max", this, bulkhead -> bulkhead.maxConcurrent)
+                .description("Maximum concurrent calls allowed by the bulkhead")
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+    }
+
+    public <T> T execute(Supplier<T> call) {
+        acquire();
+        try {
+            return call.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void acquire() {
+        if (permits.tryAcquire()) {
+            return;
+        }
+        if (queued.incrementAndGet() > maxQueue) {
+            queued.decrementAndGet();
+            queueFullRejections.increment();
+            throw new RejectedExecutionException("Bulkhead " + name + " is full");
+        }
+        try {
+            if (permits.tryAcquire(RequestDeadline.remaining(maxWait).toNanos(), TimeUnit.NANOSECONDS)) {
+                return;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            queued.decrementAndGet();
+        }
+        timeoutRejections.increment();
+        if (RequestDeadline.isExpired()) {
+            throw new DeadlineExceededException("Request deadline passed while waiting for bulkhead " + name);
+        }
+        throw new RejectedExecutionException("Timed out waiting for bulkhead " + name);
+    }
+
+    private int activeCalls() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    private Counter rejections(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("bulkhead.calls.rejected")
+                .description("Calls rejected by the bulkhead")
+                .tag("bulkhead", name)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,16 @@
+package com.itm.space.backendresources.util;
+
+import java.time.Duration;
+
+public class CallNotPermittedException extends RuntimeException {
+    private final Duration retryAfter;
+
+    public CallNotPermittedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
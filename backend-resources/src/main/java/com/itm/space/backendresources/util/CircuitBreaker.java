@@ -0,0 +1,177 @@
+package com.itm.space.backendresources.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker со скользящим окном из последних {@code windowSize} вызовов.
+ * Размыкается, когда доля ошибок или медленных вызовов достигает порога, и в разомкнутом состоянии
+ * сразу отклоняет вызовы {@link CallNotPermittedException}. Через {@code waitInOpen} пропускает
+ * {@code halfOpenCalls} пробных вызовов и по их результату замыкается или снова размыкается.
+ */
+@Slf4j
+public final class CircuitBreaker {
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    public enum Outcome {
+        SUCCESS, FAILURE, IGNORED
+    }
+
+    public record Settings(int windowSize, int minimumCalls, int failureRateThreshold, int slowCallRateThreshold,
+                           Duration slowCallDuration, Duration waitInOpen, int halfOpenCalls) {
+    }
+
+    private final String name;
+    private final Settings settings;
+    private final long slowCallNanos;
+    private final Function<Throwable, Outcome> classifier;
+    private final MeterRegistry meterRegistry;
+    private final Counter notPermitted;
+
+    private final byte[] window;
+    private int position;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private long generation;
+    private long openedAtNanos;
+    private int halfOpenStarted;
+
+    public CircuitBreaker(String name, Settings settings, Function<Throwable, Outcome> classifier,
+                          MeterRegistry meterRegistry) {
+        this.name = name;
+        this.settings = settings;
+        this.slowCallNanos = settings.slowCallDuration().toNanos();
+        this.classifier = classifier;
+        this.meterRegistry = meterRegistry;
+        this.window = new byte[settings.windowSize()];
+        this.notPermitted = Counter.builder("circuitbreaker.calls.not-permitted")
+                .description("Calls rejected because the circuit breaker was open")
+                .tag("name", name)
+                .register(meterRegistry);
+        for (State value : State.values()) {
+            Gauge.builder("circuitbreaker.state", this, breaker -> breaker.getState() == value ? 1 : 0)
+                    .description("1 for the current circuit breaker state, 0 otherwise")
+                    .tag("name", name)
+                    .tag("state", value.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry);
+        }
+    }
+
+    public <T> T execute(Supplier<T> call) {
+        long permit = acquire();
+        long start = System.nanoTime();
+        // Error и прочие не классифицированные исключения не учитываются, но пробный слот всё равно освобождается
+        Outcome outcome = Outcome.IGNORED;
+        try {
+            T result = call.get();
+            outcome = Outcome.SUCCESS;
+            return result;
+        } catch (RuntimeException ex) {
+            outcome = classifier.apply(ex);
+            throw ex;
+        } finally {
+            record(permit, outcome, System.nanoTime() - start);
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private synchronized long acquire() {
+        if (state == State.OPEN) {
+            long openFor = System.nanoTime() - openedAtNanos;
+            if (openFor < settings.waitInOpen().toNanos()) {
+                throw rejected(settings.waitInOpen().minusNanos(openFor));
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenStarted >= settings.halfOpenCalls()) {
+                throw rejected(Duration.ZERO);
+            }
+            halfOpenStarted++;
+        }
+        return generation;
+    }
+
+    private synchronized void record(long permit, Outcome outcome, long durationNanos) {
+        // Результат вызова, начатого до смены состояния, к новому окну не относится
+        if (permit != generation) {
+            return;
+        }
+        if (outcome == Outcome.IGNORED) {
+            if (state == State.HALF_OPEN) {
+                halfOpenStarted--;
+            }
+            return;
+        }
+        byte flags = (byte) ((outcome == Outcome.FAILURE ? FAILED : 0) | (durationNanos >= slowCallNanos ? SLOW : 0));
+        if (recorded == window.length) {
+            byte evicted = window[position];
+            failures -= evicted & FAILED;
+            slowCalls -= (evicted & SLOW) >> 1;
+        } else {
+            recorded++;
+        }
+        window[position] = flags;
+        position = (position + 1) % window.length;
+        failures += flags & FAILED;
+        slowCalls += (flags & SLOW) >> 1;
+
+        if (state == State.HALF_OPEN) {
+            if (recorded >= settings.halfOpenCalls()) {
+                transitionTo(exceedsThresholds() ? State.OPEN : State.CLOSED);
+            }
+        } else if (state == State.CLOSED && recorded >= settings.minimumCalls() && exceedsThresholds()) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private boolean exceedsThresholds() {
+        return failures * 100 >= settings.failureRateThreshold() * recorded
+                || slowCalls * 100 >= settings.slowCallRateThreshold() * recorded;
+    }
+
+    private void transitionTo(State target) {
+        log.warn("Circuit breaker {} changed state from {} to {} (failures={}, slow={}, calls={})",
+                name, state, target, failures, slowCalls, recorded);
+        Counter.builder("circuitbreaker.transitions")
+                .description("Circuit breaker state transitions")
+                .tag("name", name)
+                .tag("from", state.name().toLowerCase(Locale.ROOT))
+                .tag("to", target.name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry)
+                .increment();
+        state = target;
+        generation++;
+        position = 0;
+        recorded = 0;
+        failures = 0;
+        slowCalls = 0;
+        halfOpenStarted = 0;
+        if (target == State.OPEN) {
+            openedAtNanos = System.nanoTime();
+        }
+    }
+
+    private CallNotPermittedException rejected(Duration retryAfter) {
+        notPermitted.increment();
+        return new CallNotPermittedException("Circuit breaker " + name + " is " + state, retryAfter);
+    }
+}
@@ -0,0 +1,8 @@
+package com.itm.space.backendresources.util;
+
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,67 @@
+package com.itm.space.backendresources.util;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Параллельный запуск нескольких независимых вызовов с общим таймаутом.
+ * Первая ошибка или истечение таймаута отменяет все незавершённые ветки.
+ */
+public final class FanOut implements AutoCloseable {
+    private final Executor executor;
+    private final List<Future<?>> forks = new ArrayList<>();
+    private final BlockingQueue<Future<?>> completed = new LinkedBlockingQueue<>();
+
+    public FanOut(Executor executor) {
+        this.executor = executor;
+    }
+
+    public <T> Future<T> fork(Callable<T> task) {
+        FutureTask<T> future = new FutureTask<>(task) {
+            @Override
+            protected void done() {
+                completed.add(this);
+            }
+        };
+        forks.add(future);
+        try {
+            executor.execute(future);
+        } catch (RuntimeException ex) {
+            forks.remove(future);
+            throw ex;
+        }
+        return future;
+    }
+
+    public void join(Duration timeout) throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        for (int i = 0; i < forks.size(); i++) {
+            Future<?> next = completed.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (next == null) {
+                close();
+                throw new TimeoutException("Timed out after " + timeout.toMillis() + " ms");
+            }
+            try {
+                next.get();
+            } catch (ExecutionException ex) {
+                close();
+                throw ex;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        forks.forEach(future -> future.cancel(true));
+    }
+}
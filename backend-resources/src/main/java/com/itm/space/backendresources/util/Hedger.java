@@ -0,0 +1,191 @@
+package com.itm.space.backendresources.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Хеджирование идемпотентных вызовов: если вызов не вернулся за {@code delay}, запускается его копия,
+ * и берётся первый успешный ответ. Доля копий ограничена бюджетом: каждый вызов добавляет
+ * {@code budgetPercent / 100} жетона, каждая копия тратит один, так что копий не больше
+ * {@code budgetPercent} процентов от трафика.
+ * <p>
+ * Проигравшая попытка прерывается. Если она ещё ждёт разрешения (bulkhead, пул соединений), поток
+ * освобождается сразу; блокирующее чтение из сокета прерывание не останавливает, и такая попытка держит
+ * поток и соединение до ответа или таймаута чтения.
+ */
+public final class Hedger {
+    private static final double MAX_TOKENS = 10;
+
+    private final Executor executor;
+    private final double tokensPerCall;
+    private final Counter hedged;
+    private final Counter won;
+    private final Counter wasted;
+    private double tokens;
+
+    public Hedger(String name, Executor executor, double budgetPercent, MeterRegistry meterRegistry) {
+        this.executor = executor;
+        this.tokensPerCall = budgetPercent / 100;
+        this.hedged = counter(meterRegistry, name, "hedged");
+        this.won = counter(meterRegistry, name, "won");
+        this.wasted = counter(meterRegistry, name, "wasted");
+    }
+
+    public <T> T execute(Supplier<T> call, Duration delay) {
+        deposit();
+        Race<T> race = new Race<>();
+        Attempt<T> primary = race.start(call, false);
+        try {
+            executor.execute(primary);
+        } catch (RejectedExecutionException ex) {
+            race.abandon();
+            return call.get();
+        }
+        Attempt<T> hedge = null;
+        try {
+            try {
+                return race.result.get(delay.toNanos(), TimeUnit.NANOSECONDS).value();
+            } catch (TimeoutException ex) {
+                // ответа нет дольше задержки - пробуем отправить копию
+            }
+            if (!race.result.isDone() && withdraw()) {
+                hedge = trySubmit(race, call);
+            }
+            Winner<T> winner = race.result.get();
+            if (hedge != null) {
+                (winner.hedge() ? won : wasted).increment();
+            }
+            return winner.value();
+        } catch (ExecutionException ex) {
+            throw unwrap(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for the call");
+        } finally {
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+
+    private <T> Attempt<T> trySubmit(Race<T> race, Supplier<T> call) {
+        Attempt<T> hedge = race.start(call, true);
+        try {
+            executor.execute(hedge);
+        } catch (RejectedExecutionException ex) {
+            race.abandon();
+            return null;
+        }
+        hedged.increment();
+        return hedge;
+    }
+
+    private static RuntimeException unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        if (error instanceof Error fatal) {
+            throw fatal;
+        }
+        return new CompletionException(error);
+    }
+
+    private synchronized void deposit() {
+        tokens = Math.min(MAX_TOKENS, tokens + tokensPerCall);
+    }
+
+    private synchronized boolean withdraw() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    // hedged - отправленные копии, won - копия ответила первой, wasted - первым ответил исходный вызов
+    private static Counter counter(MeterRegistry meterRegistry, String name, String result) {
+        return Counter.builder("hedging.requests")
+                .description("Hedge requests by result")
+                .tag("name", name)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private record Winner<T>(T value, boolean hedge) {
+    }
+
+    // Побеждает первый успешный ответ; ошибкой всё завершается, только когда упали все запущенные попытки
+    private static final class Race<T> {
+        private final CompletableFuture<Winner<T>> result = new CompletableFuture<>();
+        private int running;
+        private Throwable lastError;
+
+        synchronized Attempt<T> start(Supplier<T> call, boolean hedge) {
+            running++;
+            return new Attempt<>(this, call, hedge);
+        }
+
+        synchronized void abandon() {
+            finished();
+        }
+
+        synchronized void succeeded(T value, boolean hedge) {
+            running--;
+            result.complete(new Winner<>(value, hedge));
+        }
+
+        synchronized void failed(Throwable error) {
+            lastError = error;
+            finished();
+        }
+
+        private void finished() {
+            if (--running == 0 && lastError != null) {
+                result.completeExceptionally(lastError);
+            }
+        }
+    }
+
+    // FutureTask, а не CompletableFuture: его cancel(true) прерывает поток, в котором идёт попытка
+    private static final class Attempt<T> extends FutureTask<T> {
+        private final Race<T> race;
+        private final boolean hedge;
+
+        Attempt(Race<T> race, Supplier<T> call, boolean hedge) {
+            super(call::get);
+            this.race = race;
+            this.hedge = hedge;
+        }
+
+        @Override
+        protected void done() {
+            // Отменяют только проигравшую попытку, когда исход уже известен
+            if (isCancelled()) {
+                return;
+            }
+            try {
+                race.succeeded(get(), hedge);
+            } catch (ExecutionException ex) {
+                race.failed(ex.getCause());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.itm.space.backendresources.util;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+/**
+ * Дедлайн текущего запроса, привязанный к потоку. Задачи, которые запрос отдаёт в другие пулы,
+ * получают его через {@code propagate}. Без дедлайна все методы ведут себя так, будто времени достаточно.
+ */
+public final class RequestDeadline {
+    private static final ThreadLocal<Long> DEADLINE_NANOS = new ThreadLocal<>();
+
+    private RequestDeadline() {
+    }
+
+    public static void set(Duration budget) {
+        DEADLINE_NANOS.set(System.nanoTime() + budget.toNanos());
+    }
+
+    public static void clear() {
+        DEADLINE_NANOS.remove();
+    }
+
+    public static boolean isExpired() {
+        Long deadline = DEADLINE_NANOS.get();
+        return deadline != null && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * @return меньшее из {@code limit} и времени, оставшегося до дедлайна (но не меньше нуля)
+     */
+    public static Duration remaining(Duration limit) {
+        Long deadline = DEADLINE_NANOS.get();
+        if (deadline == null) {
+            return limit;
+        }
+        long remainingNanos = Math.max(0, deadline - System.nanoTime());
+        return remainingNanos < limit.toNanos() ? Duration.ofNanos(remainingNanos) : limit;
+    }
+
+    public static void checkNotExpired() {
+        if (isExpired()) {
+            throw new DeadlineExceededException("Request deadline exceeded");
+        }
+    }
+
+    /**
+     * Выполняет задачу со своим дедлайном вместо дедлайна текущего запроса: для общей работы,
+     * результат которой ждут несколько запросов.
+     */
+    public static <T> T withDeadline(Duration budget, Supplier<T> task) {
+        Long previous = DEADLINE_NANOS.get();
+        set(budget);
+        try {
+            return task.get();
+        } finally {
+            DEADLINE_NANOS.set(previous);
+        }
+    }
+
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        Long deadline = DEADLINE_NANOS.get();
+        return () -> {
+            Long previous = DEADLINE_NANOS.get();
+            DEADLINE_NANOS.set(deadline);
+            try {
+                return task.call();
+            } finally {
+                DEADLINE_NANOS.set(previous);
+            }
+        };
+    }
+
+    public static <T> Supplier<T> propagateSupplier(Supplier<T> task) {
+        Long deadline = DEADLINE_NANOS.get();
+        return () -> {
+            Long previous = DEADLINE_NANOS.get();
+            DEADLINE_NANOS.set(deadline);
+            try {
+                return task.get();
+            } finally {
+                DEADLINE_NANOS.set(previous);
+            }
+        };
+    }
+
+    public static Runnable propagate(Runnable task) {
+        Long deadline = DEADLINE_NANOS.get();
+        return () -> {
+            Long previous = DEADLINE_NANOS.get();
+            DEADLINE_NANOS.set(deadline);
+            try {
+                task.run();
+            } finally {
+                DEADLINE_NANOS.set(previous);
+            }
+        };
+    }
+}
@@ -0,0 +1,114 @@
+package com.itm.space.backendresources.util;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Объединяет одновременные вызовы с одинаковым ключом в одну загрузку.
+ * Загрузка выполняется в переданном пуле, а каждый вызов, включая начавший её, ждёт результата
+ * (или исключения) не дольше своего {@code maxWait}: после него вызов получает {@link DeadlineExceededException}.
+ * Когда ждать перестают все вызовы, незавершённая загрузка отменяется с прерыванием потока.
+ */
+public final class SingleFlight<K, V> {
+    private final ConcurrentMap<K, Flight> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder originating = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public V execute(K key, Supplier<V> loader, Executor executor, Duration maxWait) {
+        while (true) {
+            Flight flight = new Flight(key, loader);
+            Flight existing = inFlight.putIfAbsent(key, flight);
+            if (existing == null) {
+                originating.increment();
+                flight.start(executor);
+                return flight.await(maxWait);
+            }
+            if (existing.join()) {
+                coalesced.increment();
+                return existing.await(maxWait);
+            }
+            // Загрузка уже завершилась или отменена, но ещё не убрана из таблицы
+            inFlight.remove(key, existing);
+        }
+    }
+
+    public long originatingCount() {
+        return originating.sum();
+    }
+
+    public long coalescedCount() {
+        return coalesced.sum();
+    }
+
+    private final class Flight extends FutureTask<V> {
+        private final K key;
+        // Начавший загрузку вызов ждёт её с момента создания
+        private int waiters = 1;
+
+        Flight(K key, Supplier<V> loader) {
+            super(loader::get);
+            this.key = key;
+        }
+
+        void start(Executor executor) {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException ex) {
+                setException(ex);
+            }
+        }
+
+        synchronized boolean join() {
+            if (isDone()) {
+                return false;
+            }
+            waiters++;
+            return true;
+        }
+
+        V await(Duration maxWait) {
+            try {
+                return get(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException ex) {
+                throw new DeadlineExceededException("Timed out after " + maxWait.toMillis()
+                        + " ms waiting for an in-flight call");
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while waiting for an in-flight call");
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                if (cause instanceof Error error) {
+                    throw error;
+                }
+                throw new CompletionException(cause);
+            } finally {
+                leave();
+            }
+        }
+
+        private synchronized void leave() {
+            if (--waiters == 0 && !isDone()) {
+                cancel(true);
+            }
+        }
+
+        @Override
+        protected void done() {
+            inFlight.remove(key, this);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.itm.space.backendresources.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveConcurrencyLimitFilterTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void serverErrorShouldCountAsDrop() throws Exception {
+        AdaptiveConcurrencyLimitFilter filter = filter(10, Duration.ofSeconds(1));
+
+        filter.doFilter(request(), new MockHttpServletResponse(),
+                (request, response) -> ((MockHttpServletResponse) response).setStatus(HttpStatus.BAD_GATEWAY.value()));
+
+        assertThat(limit()).isEqualTo(9);
+    }
+
+    @Test
+    void clientErrorShouldNotLowerLimit() throws Exception {
+        AdaptiveConcurrencyLimitFilter filter = filter(10, Duration.ofSeconds(1));
+
+        filter.doFilter(request(), new MockHttpServletResponse(),
+                (request, response) -> ((MockHttpServletResponse) response).setStatus(HttpStatus.NOT_FOUND.value()));
+
+        assertThat(limit()).isEqualTo(10);
+    }
+
+    @Test
+    void downstreamRejectionShouldNotLowerLimit() throws Exception {
+        AdaptiveConcurrencyLimitFilter filter = filter(10, Duration.ofSeconds(1));
+
+        // 503 и 504 отдают защиты вызовов Keycloak, нагрузка на сам сервис тут ни при чём
+        filter.doFilter(request(), new MockHttpServletResponse(), (request, response) ->
+                ((MockHttpServletResponse) response).setStatus(HttpStatus.SERVICE_UNAVAILABLE.value()));
+        filter.doFilter(request(), new MockHttpServletResponse(), (request, response) ->
+                ((MockHttpServletResponse) response).setStatus(HttpStatus.GATEWAY_TIMEOUT.value()));
+
+        assertThat(limit()).isEqualTo(10);
+    }
+
+    @Test
+    void exceptionShouldCountAsDrop() {
+        AdaptiveConcurrencyLimitFilter filter = filter(10, Duration.ofSeconds(1));
+
+        assertThatThrownBy(() -> filter.doFilter(request(), new MockHttpServletResponse(), (request, response) -> {
+            throw new IllegalStateException("handler failed");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(limit()).isEqualTo(9);
+    }
+
+    @Test
+    void errorShouldReleasePermit() throws Exception {
+        AdaptiveConcurrencyLimitFilter filter = filter(1, Duration.ofSeconds(1));
+        MockHttpServletResponse next = new MockHttpServletResponse();
+
+        assertThatThrownBy(() -> filter.doFilter(request(), new MockHttpServletResponse(), (request, response) -> {
+            throw new StackOverflowError();
+        })).isInstanceOf(StackOverflowError.class);
+        filter.doFilter(request(), next, (request, response) -> {
+        });
+
+        assertThat(next.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(limit()).isEqualTo(1);
+    }
+
+    @Test
+    void requestBeyondLimitShouldGet429() throws Exception {
+        AdaptiveConcurrencyLimitFilter filter = filter(1, Duration.ofSeconds(1));
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        FilterChain noop = (request, response) -> {
+        };
+
+        // Второй запрос приходит, пока первый ещё выполняется
+        filter.doFilter(request(), new MockHttpServletResponse(),
+                (request, response) -> filter.doFilter(request(), rejected, noop));
+
+        assertThat(rejected.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("1");
+    }
+
+    @Test
+    void otherPathsShouldNotBeLimited() throws Exception {
+        AdaptiveConcurrencyLimitFilter filter = filter(1, Duration.ofSeconds(1));
+        MockHttpServletRequest actuator = new MockHttpServletRequest("GET", "/actuator/health");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request(), new MockHttpServletResponse(),
+                (request, ignored) -> filter.doFilter(actuator, response, (r, s) -> {
+                }));
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+    }
+
+    @Test
+    void bulkBatchAndJobRequestsShouldNotBeLimited() throws Exception {
+        AdaptiveConcurrencyLimitFilter filter = filter(1, Duration.ofSeconds(1));
+        MockHttpServletRequest batch = new MockHttpServletRequest("GET", "/api/users");
+        batch.setParameter("ids", UUID.randomUUID().toString());
+
+        for (MockHttpServletRequest nested : List.of(new MockHttpServletRequest("POST", "/api/users/bulk"), batch,
+                new MockHttpServletRequest("POST", "/api/users/batch"),
+                new MockHttpServletRequest("POST", "/api/users/jobs"),
+                new MockHttpServletRequest("GET", "/api/users/jobs/" + UUID.randomUUID()))) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+
+            filter.doFilter(request(), new MockHttpServletResponse(),
+                    (request, ignored) -> filter.doFilter(nested, response, (r, s) -> {
+                    }));
+
+            assertThat(response.getStatus()).as(nested.getRequestURI()).isEqualTo(HttpStatus.OK.value());
+        }
+    }
+
+    @Test
+    void pathShouldBeMatchedDecoded() throws Exception {
+        AdaptiveConcurrencyLimitFilter filter = filter(1, Duration.ofSeconds(1));
+        MockHttpServletResponse encoded = new MockHttpServletResponse();
+        MockHttpServletResponse otherPrefix = new MockHttpServletResponse();
+        FilterChain noop = (request, response) -> {
+        };
+
+        filter.doFilter(request(), new MockHttpServletResponse(), (request, response) -> {
+            filter.doFilter(new MockHttpServletRequest("GET", "/api/%75sers/" + UUID.randomUUID()), encoded, noop);
+            filter.doFilter(new MockHttpServletRequest("GET", "/api/usersettings"), otherPrefix, noop);
+        });
+
+        assertThat(encoded.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+        assertThat(otherPrefix.getStatus()).isEqualTo(HttpStatus.OK.value());
+    }
+
+    private AdaptiveConcurrencyLimitFilter filter(int initialLimit, Duration latencyTarget) {
+        return new AdaptiveConcurrencyLimitFilter(meterRegistry, initialLimit, 1, 100, latencyTarget);
+    }
+
+    private double limit() {
+        return meterRegistry.get("concurrency.limiter.limit").tag("name", "user-api").gauge().value();
+    }
+
+    private static MockHttpServletRequest request() {
+        return new MockHttpServletRequest("GET", "/api/users/" + UUID.randomUUID());
+    }
+}
@@ -0,0 +1,176 @@
+package com.itm.space.backendresources.controller;
+
+import com.itm.space.backendresources.api.request.UserBatchRequest;
+import com.itm.space.backendresources.api.request.UserRequest;
+import com.itm.space.backendresources.api.response.UserBatchItemResponse;
+import com.itm.space.backendresources.api.response.UserResponse;
+import com.itm.space.backendresources.exception.BackendResourcesException;
+import com.itm.space.backendresources.service.ReactiveUserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.reactive.server.SecurityMockServerConfigurers.mockUser;
+
+/**
+ * Интеграционные тесты реактивного варианта API (профиль reactive).
+ * Проверяют те же правила доступа и коды ответов, что и для UserController.
+ */
+@SpringBootTest
+@AutoConfigureWebTestClient
+@ActiveProfiles("reactive")
+class ReactiveUserControllerIntegrationTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private ReactiveUserService userService;
+
+    /**
+     * Проверяет, что модератор получает пользователя по id.
+     */
+    @Test
+    void shouldReturnUser_WhenUserIsModerator() {
+        UUID id = UUID.randomUUID();
+        when(userService.getUserById(id)).thenReturn(Mono.just(new UserResponse(
+                "firstName_", "lastName_", "test@example.com", List.of("MODERATOR"), List.of("Moderators"))));
+
+        webTestClient.mutateWith(mockUser().roles("MODERATOR"))
+                .get().uri("/api/users/{id}", id)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.email").isEqualTo("test@example.com")
+                .jsonPath("$.roles[0]").isEqualTo("MODERATOR");
+    }
+
+    /**
+     * Проверяет, что ошибка сервиса превращается в соответствующий HTTP статус.
+     */
+    @Test
+    void shouldReturnNotFound_WhenUserDoesNotExist() {
+        UUID id = UUID.randomUUID();
+        when(userService.getUserById(id))
+                .thenReturn(Mono.error(new BackendResourcesException("Not found", HttpStatus.NOT_FOUND)));
+
+        webTestClient.mutateWith(mockUser().roles("MODERATOR"))
+                .get().uri("/api/users/{id}", id)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    /**
+     * Проверяет создание пользователя: 201 и ссылка на созданного пользователя.
+     */
+    @Test
+    void shouldCreateUser_WhenRequestIsValid() {
+        UUID createdId = UUID.randomUUID();
+        when(userService.createUser(any(UserRequest.class))).thenReturn(Mono.just(createdId));
+
+        webTestClient.mutateWith(mockUser().roles("MODERATOR"))
+                .post().uri("/api/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new UserRequest("username_TestUser", "email_test@example.com", "password_",
+                        "firstName_", "lastName_"))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectHeader().valueMatches("Location", ".*/api/users/" + createdId)
+                .expectBody()
+                .jsonPath("$.id").isEqualTo(createdId.toString());
+    }
+
+    /**
+     * Проверяет, что некорректный запрос на создание возвращает 400 с ошибками по полям.
+     */
+    @Test
+    void shouldReturnBadRequest_WhenRequestDataIsInvalid() {
+        webTestClient.mutateWith(mockUser().roles("MODERATOR"))
+                .post().uri("/api/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new UserRequest("", "invalid_email", "123", "", ""))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.email").isEqualTo("Email should be valid");
+    }
+
+    /**
+     * Проверяет, что пользователь без роли MODERATOR получает 403, а анонимный - 401.
+     */
+    @Test
+    void shouldRejectRequest_WhenUserIsNotModerator() {
+        UUID id = UUID.randomUUID();
+        when(userService.getUserById(eq(id))).thenReturn(Mono.empty());
+
+        webTestClient.mutateWith(mockUser().roles("USER"))
+                .get().uri("/api/users/{id}", id)
+                .exchange()
+                .expectStatus().isForbidden();
+
+        webTestClient.get().uri("/api/users/{id}", id)
+                .exchange()
+                .expectStatus().isUnauthorized();
+    }
+
+    /**
+     * Проверяет, что закодированный путь к API сопоставляется с правилом для /api/users, а не проходит мимо него.
+     */
+    @Test
+    void shouldCheckRole_WhenPathIsPercentEncoded() {
+        webTestClient.mutateWith(mockUser().roles("USER"))
+                .get().uri(URI.create("/api/%75sers/" + UUID.randomUUID()))
+                .exchange()
+                .expectStatus().isForbidden();
+    }
+
+    /**
+     * Проверяет, что пути вне списка правил запрещены даже модератору, а swagger и actuator открыты.
+     */
+    @Test
+    void shouldDenyUnlistedPaths_AndPermitPublicOnes() {
+        webTestClient.mutateWith(mockUser().roles("MODERATOR"))
+                .get().uri("/internal/state")
+                .exchange()
+                .expectStatus().isForbidden();
+
+        webTestClient.get().uri("/actuator/health")
+                .exchange()
+                .expectStatus().value(status -> assertThat(status).isNotIn(401, 403));
+    }
+
+    /**
+     * Проверяет пакетное получение пользователей со списком id в теле запроса.
+     */
+    @Test
+    void shouldReturnBatch_WhenIdsAreInRequestBody() {
+        UUID id = UUID.randomUUID();
+        when(userService.getUsersByIds(List.of(id))).thenReturn(Mono.just(List.of(
+                UserBatchItemResponse.failed(id, HttpStatus.NOT_FOUND, "User not found"))));
+
+        webTestClient.mutateWith(mockUser().roles("MODERATOR"))
+                .post().uri("/api/users/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new UserBatchRequest(List.of(id)))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].id").isEqualTo(id.toString())
+                .jsonPath("$[0].status").isEqualTo(404);
+    }
+}
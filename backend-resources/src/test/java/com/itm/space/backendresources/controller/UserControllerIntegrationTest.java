@@ -1,24 +1,38 @@
 package com.itm.space.backendresources.controller;
 
 import com.itm.space.backendresources.BaseIntegrationTest;
+import com.itm.space.backendresources.api.request.UserBatchRequest;
+import com.itm.space.backendresources.api.request.UserBulkRequest;
+import com.itm.space.backendresources.api.request.UserInclude;
 import com.itm.space.backendresources.api.request.UserRequest;
+import com.itm.space.backendresources.api.response.UserBatchItemResponse;
+import com.itm.space.backendresources.api.response.UserBulkResultResponse;
+import com.itm.space.backendresources.api.response.UserCreationJobResponse;
 import com.itm.space.backendresources.api.response.UserResponse;
 import com.itm.space.backendresources.exception.BackendResourcesException;
+import com.itm.space.backendresources.exception.ServiceUnavailableException;
+import com.itm.space.backendresources.service.UserCreationJobService;
 import com.itm.space.backendresources.service.UserService;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.http.MediaType;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 
@@ -33,6 +47,12 @@ class UserControllerIntegrationTest extends BaseIntegrationTest {
     @MockBean
     private UserService userService;
 
+    @MockBean
+    private UserCreationJobService userCreationJobService;
+
+    @Value("${users.batch.max-size}")
+    private int batchMaxSize;
+
 
     /**
      * Проверяем создание пользователя
@@ -55,10 +75,16 @@ class UserControllerIntegrationTest extends BaseIntegrationTest {
                     "password_", // String password
                     "firstName_", // String firstName
                     "lastName_"); // String lastName
+            final UUID createdId = UUID.randomUUID();
+
+            // Сервис возвращает id созданного пользователя
+            when(userService.createUser(any(UserRequest.class))).thenReturn(createdId);
 
             // Выполняем POST запрос к /api/users с корректными данными
             mvc.perform(requestWithContent(post("/api/users"), userRequest))
-                    .andExpect(status().isOk()); // Ожидаем статус ответа 200 OK, если все успешно
+                    .andExpect(status().isCreated()) // Ожидаем статус ответа 201 Created, если все успешно
+                    .andExpect(header().string("Location", "http://localhost/api/users/" + createdId))
+                    .andExpect(jsonPath("$.id").value(createdId.toString()));
 
             // Проверяем, что сервисный метод createUser был вызван ровно один раз с нужными параметрами
             verify(userService, times(1))
@@ -94,6 +120,52 @@ class UserControllerIntegrationTest extends BaseIntegrationTest {
         }
 
 
+        /**
+         * Проверяет, что повтор запроса с тем же Idempotency-Key не вызывает сервис повторно.
+         */
+        @Test
+        @WithMockUser(roles = {"MODERATOR"})
+        void shouldCreateUserOnce_WhenRequestIsRepeatedWithSameIdempotencyKey() throws Exception {
+            UserRequest userRequest = new UserRequest(
+                    "username_Idempotent", "idempotent@example.com", "password_", "firstName_", "lastName_");
+            String idempotencyKey = UUID.randomUUID().toString();
+            final UUID createdId = UUID.randomUUID();
+
+            when(userService.createUser(any(UserRequest.class))).thenReturn(createdId);
+
+            // Повтор получает тот же id, что и первый запрос
+            for (int i = 0; i < 2; i++) {
+                mvc.perform(requestWithContent(post("/api/users"), userRequest)
+                                .header("Idempotency-Key", idempotencyKey))
+                        .andExpect(status().isCreated())
+                        .andExpect(jsonPath("$.id").value(createdId.toString()));
+            }
+
+            verify(userService, times(1)).createUser(any(UserRequest.class));
+        }
+
+
+        /**
+         * Проверяет, что повторное использование Idempotency-Key с другим телом запроса возвращает 422.
+         */
+        @Test
+        @WithMockUser(roles = {"MODERATOR"})
+        void shouldReturnUnprocessableEntity_WhenIdempotencyKeyIsReusedWithDifferentRequest() throws Exception {
+            String idempotencyKey = UUID.randomUUID().toString();
+
+            when(userService.createUser(any(UserRequest.class))).thenReturn(UUID.randomUUID());
+
+            mvc.perform(requestWithContent(post("/api/users"), new UserRequest(
+                            "username_First", "first@example.com", "password_", "firstName_", "lastName_"))
+                            .header("Idempotency-Key", idempotencyKey))
+                    .andExpect(status().isCreated());
+
+            mvc.perform(requestWithContent(post("/api/users"), new UserRequest(
+                            "username_Second", "second@example.com", "password_", "firstName_", "lastName_"))
+                            .header("Idempotency-Key", idempotencyKey))
+                    .andExpect(status().isUnprocessableEntity());
+        }
+
         /**
          * Проверяет, что при передаче некорректных данных для создания пользователя
          * возвращается статус 400 Bad Request и соответствующие сообщения об ошибках.
@@ -127,6 +199,122 @@ class UserControllerIntegrationTest extends BaseIntegrationTest {
 
 
 
+    /**
+     * Проверяет асинхронное создание пользователей через очередь задач
+     */
+    @Nested
+    class CreateJobTests {
+
+        /**
+         * Проверяет, что задача ставится в очередь и возвращается 202 Accepted со ссылкой на статус.
+         */
+        @Test
+        @WithMockUser(roles = "MODERATOR")
+        void shouldAcceptJob_WhenRequestIsValid() throws Exception {
+            UserRequest userRequest = new UserRequest(
+                    "username_TestUser", "email_test@example.com", "password_", "firstName_", "lastName_");
+            final UUID jobId = UUID.randomUUID();
+
+            when(userCreationJobService.submit(any(UserRequest.class))).thenReturn(new UserCreationJobResponse(
+                    jobId, "username_TestUser", UserCreationJobResponse.Status.QUEUED, null, null, null,
+                    Instant.now(), null));
+
+            mvc.perform(requestWithContent(post("/api/users/jobs"), userRequest))
+                    .andExpect(status().isAccepted())
+                    .andExpect(header().string("Location", "http://localhost/api/users/jobs/" + jobId))
+                    .andExpect(jsonPath("$.id").value(jobId.toString()))
+                    .andExpect(jsonPath("$.status").value("QUEUED"));
+        }
+
+
+        /**
+         * Проверяет, что при переполненной очереди возвращается 429 Too Many Requests.
+         */
+        @Test
+        @WithMockUser(roles = "MODERATOR")
+        void shouldReturnTooManyRequests_WhenQueueIsFull() throws Exception {
+            UserRequest userRequest = new UserRequest(
+                    "username_TestUser", "email_test@example.com", "password_", "firstName_", "lastName_");
+
+            when(userCreationJobService.submit(any(UserRequest.class)))
+                    .thenThrow(new BackendResourcesException("User creation queue is full", HttpStatus.TOO_MANY_REQUESTS));
+
+            mvc.perform(requestWithContent(post("/api/users/jobs"), userRequest))
+                    .andExpect(status().isTooManyRequests());
+        }
+
+
+        /**
+         * Проверяет получение статуса задачи по её id.
+         */
+        @Test
+        @WithMockUser(roles = "MODERATOR")
+        void shouldReturnJobStatus_WhenJobExists() throws Exception {
+            final UUID jobId = UUID.randomUUID();
+
+            when(userCreationJobService.getJob(jobId)).thenReturn(new UserCreationJobResponse(
+                    jobId, "username_TestUser", UserCreationJobResponse.Status.FAILED, null, 409, "User exists",
+                    Instant.now(), Instant.now()));
+
+            mvc.perform(get("/api/users/jobs/{id}", jobId)
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.status").value("FAILED"))
+                    .andExpect(jsonPath("$.errorStatus").value(409));
+        }
+    }
+
+
+
+    /**
+     * Проверяет массовое создание пользователей
+     */
+    @Nested
+    class BulkCreateTests {
+
+        /**
+         * Проверяет, что результат по каждому пользователю возвращается в порядке запроса.
+         */
+        @Test
+        @WithMockUser(roles = "MODERATOR")
+        void shouldReturnPerUserResults_WhenRequestIsValid() throws Exception {
+            UserRequest newUser = new UserRequest(
+                    "username_New", "new_user@example.com", "password_", "firstName_", "lastName_");
+            UserRequest existingUser = new UserRequest(
+                    "username_Existing", "existing_user@example.com", "password_", "firstName_", "lastName_");
+
+            when(userService.createUsers(List.of(newUser, existingUser))).thenReturn(List.of(
+                    new UserBulkResultResponse("username_New", UserBulkResultResponse.Status.CREATED, "id-1", null),
+                    new UserBulkResultResponse("username_Existing", UserBulkResultResponse.Status.CONFLICT, "id-2", null)));
+
+            mvc.perform(requestWithContent(post("/api/users/bulk"), new UserBulkRequest(List.of(newUser, existingUser))))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].status").value("CREATED"))
+                    .andExpect(jsonPath("$[0].id").value("id-1"))
+                    .andExpect(jsonPath("$[1].status").value("CONFLICT"))
+                    .andExpect(jsonPath("$[1].id").value("id-2"));
+        }
+
+
+        /**
+         * Проверяет, что ошибка валидации любого элемента возвращает 400 с указанием индекса элемента.
+         */
+        @Test
+        @WithMockUser(roles = "MODERATOR")
+        void shouldReturnBadRequest_WhenAnyUserIsInvalid() throws Exception {
+            UserRequest invalidUser = new UserRequest(
+                    "username_", "invalid_email", "password_", "firstName_", "lastName_");
+
+            mvc.perform(requestWithContent(post("/api/users/bulk"), new UserBulkRequest(List.of(invalidUser))))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$['users[0].email']").value("Email should be valid"));
+
+            verify(userService, never()).createUsers(any());
+        }
+    }
+
+
+
     /**
      * Проверяет получение информации о пользователе по его идентификатору
      */
@@ -173,6 +361,63 @@ class UserControllerIntegrationTest extends BaseIntegrationTest {
         }
 
 
+        /**
+         * Проверяет, что параметр include передаётся в сервис, а незапрошенные поля отсутствуют в ответе.
+         */
+        @Test
+        @WithMockUser(roles = "MODERATOR")
+        void shouldReturnPartialUserResponse_WhenIncludeIsSpecified() throws Exception {
+            final UUID userId = UUID.randomUUID();
+
+            // Запрашиваем только роли - группы сервис не загружает
+            UserResponse userResponse = new UserResponse(
+                    "firstName_", "lastName_", "email_test@example.com", List.of("ROLE_USER"), null);
+            when(userService.getUserById(userId, Set.of(UserInclude.ROLES))).thenReturn(userResponse);
+
+            mvc.perform(get("/api/users/{id}", userId)
+                            .param("include", "roles")
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.roles[0]").value("ROLE_USER"))
+                    .andExpect(jsonPath("$.groups").doesNotExist());
+        }
+
+
+        /**
+         * Проверяет, что эффективные роли (composite и роли групп) возвращаются вместе с прямыми ролями.
+         */
+        @Test
+        @WithMockUser(roles = "MODERATOR")
+        void shouldReturnEffectiveRoles_WhenServiceResolvedThem() throws Exception {
+            final UUID userId = UUID.randomUUID();
+
+            UserResponse userResponse = new UserResponse(
+                    "firstName_", "lastName_", "email_test@example.com", List.of("MODERATOR"), List.of("staff"));
+            userResponse.setEffectiveRoles(List.of("MODERATOR", "USER", "AUDITOR"));
+            when(userService.getUserById(userId)).thenReturn(userResponse);
+
+            mvc.perform(get("/api/users/{id}", userId)
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.roles.length()").value(1))
+                    .andExpect(jsonPath("$.effectiveRoles.length()").value(3))
+                    .andExpect(jsonPath("$.effectiveRoles[2]").value("AUDITOR"));
+        }
+
+
+        /**
+         * Проверяет, что неизвестное значение include возвращает статус 400 Bad Request.
+         */
+        @Test
+        @WithMockUser(roles = "MODERATOR")
+        void shouldReturnBadRequest_WhenIncludeIsUnknown() throws Exception {
+            mvc.perform(get("/api/users/{id}", UUID.randomUUID())
+                            .param("include", "passwords")
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isBadRequest());
+        }
+
+
         /**
          * Проверяет, что при запросе информации о несуществующем пользователе возвращается статус 404 Not Found.
          */
@@ -192,6 +437,40 @@ class UserControllerIntegrationTest extends BaseIntegrationTest {
         }
 
 
+        /**
+         * Проверяет, что запрос с уже истёкшим дедлайном от гейтвея сразу завершается 504 без обращения к сервису.
+         */
+        @Test
+        @WithMockUser(roles = "MODERATOR")
+        void shouldReturnGatewayTimeout_WhenRequestDeadlineHasPassed() throws Exception {
+            final UUID userId = UUID.randomUUID();
+
+            mvc.perform(get("/api/users/{id}", userId)
+                            .header("X-Request-Deadline", String.valueOf(System.currentTimeMillis() - 1000))
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isGatewayTimeout());
+
+            verify(userService, never()).getUserById(any(UUID.class));
+        }
+
+        /**
+         * Проверяет, что при разомкнутом circuit breaker Keycloak возвращается 503 с заголовком Retry-After.
+         */
+        @Test
+        @WithMockUser(roles = "MODERATOR")
+        void shouldReturnServiceUnavailableWithRetryAfter_WhenKeycloakCircuitIsOpen() throws Exception {
+            final UUID userId = UUID.randomUUID();
+
+            when(userService.getUserById(userId))
+                    .thenThrow(new ServiceUnavailableException("Circuit breaker is OPEN", Duration.ofMillis(7500)));
+
+            mvc.perform(get("/api/users/{id}", userId)
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string("Retry-After", "8"));
+        }
+
+
         /**
          * Проверяет, что неавторизованный пользователь (без роли MODERATOR) не может получить информацию о пользователе.
          */
@@ -226,6 +505,84 @@ class UserControllerIntegrationTest extends BaseIntegrationTest {
 
 
 
+    /**
+     * Проверяет пакетное получение пользователей по списку идентификаторов
+     */
+    @Nested
+    class GetUsersByIdsTests {
+
+        /**
+         * Проверяет, что результаты возвращаются в порядке входных id, а ошибка по одному id не ломает весь ответ.
+         */
+        @Test
+        @WithMockUser(roles = "MODERATOR")
+        void shouldReturnResultsInInputOrder_WithPerIdErrors() throws Exception {
+            final UUID foundId = UUID.randomUUID();
+            final UUID missingId = UUID.randomUUID();
+
+            UserResponse userResponse = new UserResponse(
+                    "firstName_", "lastName_", "email_test@example.com", List.of("ROLE_USER"), List.of());
+
+            when(userService.getUsersByIds(List.of(missingId, foundId))).thenReturn(List.of(
+                    UserBatchItemResponse.failed(missingId, HttpStatus.NOT_FOUND, "User not found"),
+                    UserBatchItemResponse.found(foundId, userResponse)));
+
+            mvc.perform(get("/api/users")
+                            .param("ids", missingId.toString(), foundId.toString())
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].id").value(missingId.toString())) // Порядок сохраняется
+                    .andExpect(jsonPath("$[0].status").value(404))
+                    .andExpect(jsonPath("$[0].error").value("User not found"))
+                    .andExpect(jsonPath("$[1].id").value(foundId.toString()))
+                    .andExpect(jsonPath("$[1].status").value(200))
+                    .andExpect(jsonPath("$[1].user.email").value("email_test@example.com"));
+        }
+
+
+        /**
+         * Проверяет, что батч максимального размера принимается: в теле запроса, а не в query string,
+         * где 500 id не умещаются в лимиты на длину строки запроса.
+         */
+        @Test
+        @WithMockUser(roles = "MODERATOR")
+        void shouldAcceptBatchOfMaxSize_InRequestBody() throws Exception {
+            List<UUID> ids = Stream.generate(UUID::randomUUID).limit(batchMaxSize).toList();
+            when(userService.getUsersByIds(ids)).thenReturn(ids.stream()
+                    .map(id -> UserBatchItemResponse.failed(id, HttpStatus.NOT_FOUND, "User not found"))
+                    .toList());
+
+            mvc.perform(requestWithContent(post("/api/users/batch"), new UserBatchRequest(ids)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.length()").value(batchMaxSize))
+                    .andExpect(jsonPath("$[%d].id", batchMaxSize - 1).value(ids.get(batchMaxSize - 1).toString()));
+        }
+
+        /**
+         * Проверяет, что пустой список id в теле запроса отклоняется валидацией.
+         */
+        @Test
+        @WithMockUser(roles = "MODERATOR")
+        void shouldReturnBadRequest_WhenBatchBodyIsEmpty() throws Exception {
+            mvc.perform(requestWithContent(post("/api/users/batch"), new UserBatchRequest(List.of())))
+                    .andExpect(status().isBadRequest());
+        }
+
+        /**
+         * Проверяет, что пользователь без роли MODERATOR не может выполнить пакетный запрос.
+         */
+        @Test
+        @WithMockUser(roles = "USER")
+        void shouldReturnForbidden_WhenUserHasInsufficientRole() throws Exception {
+            mvc.perform(get("/api/users")
+                            .param("ids", UUID.randomUUID().toString())
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isForbidden());
+        }
+    }
+
+
+
     /**
      * Проверяет метод hello, который возвращает имя текущего пользователя
      */
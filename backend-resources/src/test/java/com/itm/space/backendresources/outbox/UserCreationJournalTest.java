@@ -0,0 +1,222 @@
+package com.itm.space.backendresources.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itm.space.backendresources.api.request.UserRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Проверяем журнал на временном каталоге: каждый тест открывает журнал заново, как после рестарта.
+ */
+class UserCreationJournalTest {
+    private static final int SEGMENT_SIZE = 1024;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final List<UserCreationJournal> opened = new ArrayList<>();
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        for (UserCreationJournal journal : opened) {
+            journal.close();
+        }
+    }
+
+    @Nested
+    class Replay {
+
+        @Test
+        void pendingCreationsShouldBeReplayedAfterRestart() throws Exception {
+            UserCreationJournal journal = open();
+            UUID first = UUID.randomUUID();
+            UUID second = UUID.randomUUID();
+            journal.append(first, request("first"));
+            journal.append(second, request("second"));
+            journal.close();
+
+            List<JournaledUserCreation> pending = open().takePendingEntries();
+
+            assertThat(pending).extracting(JournaledUserCreation::jobId).containsExactly(first, second);
+            assertThat(pending.get(1).request()).isEqualTo(request("second"));
+        }
+
+        @Test
+        void doneShouldSuppressReplay() throws Exception {
+            UserCreationJournal journal = open();
+            UUID done = UUID.randomUUID();
+            UUID pending = UUID.randomUUID();
+            journal.append(done, request("done"));
+            journal.append(pending, request("pending"));
+            journal.markDone(done);
+            journal.close();
+
+            assertThat(open().takePendingEntries()).extracting(JournaledUserCreation::jobId).containsExactly(pending);
+        }
+
+        @Test
+        void pendingEntriesShouldBeHandedOutOnlyOnce() throws Exception {
+            UserCreationJournal journal = open();
+            journal.append(UUID.randomUUID(), request("user"));
+            journal.close();
+
+            UserCreationJournal reopened = open();
+
+            assertThat(reopened.takePendingEntries()).hasSize(1);
+            // Пароли из журнала не остаются в памяти после передачи на повторную отправку
+            assertThat(reopened.takePendingEntries()).isEmpty();
+        }
+    }
+
+    @Nested
+    class Recovery {
+
+        @Test
+        void tornTailShouldBeTruncated() throws Exception {
+            UserCreationJournal journal = open();
+            UUID intact = UUID.randomUUID();
+            journal.append(intact, request("intact"));
+            journal.append(UUID.randomUUID(), request("torn"));
+            journal.close();
+            // Портим последний байт payload второй записи, как при обрыве записи на середине
+            Path segment = segments().get(0);
+            int tornOffset = lastPayloadByte(segment);
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(new byte[]{'#'}), tornOffset);
+            }
+
+            UserCreationJournal reopened = open();
+            assertThat(reopened.takePendingEntries()).extracting(JournaledUserCreation::jobId).containsExactly(intact);
+
+            // Новая запись ложится на место оборванной и читается после следующего рестарта
+            UUID next = UUID.randomUUID();
+            reopened.append(next, request("next"));
+            reopened.close();
+            assertThat(open().takePendingEntries()).extracting(JournaledUserCreation::jobId)
+                    .containsExactly(intact, next);
+        }
+
+        @Test
+        void secondInstanceShouldNotOpenLockedDirectory() throws Exception {
+            open();
+
+            UserCreationJournal second = new UserCreationJournal(objectMapper, directory, SEGMENT_SIZE, Duration.ZERO);
+
+            assertThatThrownBy(second::open).isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("already used");
+        }
+    }
+
+    @Nested
+    class Segments {
+
+        @Test
+        void journalShouldRollOverAndDeleteCompletedSegments() throws Exception {
+            UserCreationJournal journal = open();
+            List<UUID> ids = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                UUID id = UUID.randomUUID();
+                journal.append(id, request("user" + i));
+                ids.add(id);
+            }
+            assertThat(segments()).hasSizeGreaterThan(2);
+
+            for (UUID id : ids.subList(0, ids.size() - 1)) {
+                journal.markDone(id);
+            }
+
+            // Остались только активный сегмент и сегмент с последней необработанной заявкой
+            assertThat(segments()).hasSizeLessThanOrEqualTo(2);
+            journal.close();
+            assertThat(open().takePendingEntries()).extracting(JournaledUserCreation::jobId)
+                    .containsExactly(ids.get(ids.size() - 1));
+        }
+
+        @Test
+        void concurrentAppendsShouldAllBeDurable() throws Exception {
+            UserCreationJournal journal = open(Duration.ofMillis(1));
+            Set<UUID> ids = ConcurrentHashMap.newKeySet();
+            ExecutorService writers = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int writer = 0; writer < 8; writer++) {
+                    futures.add(writers.submit(() -> {
+                        for (int i = 0; i < 25; i++) {
+                            UUID id = UUID.randomUUID();
+                            journal.append(id, request("user"));
+                            ids.add(id);
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                writers.shutdownNow();
+            }
+            journal.close();
+
+            assertThat(open().takePendingEntries()).extracting(JournaledUserCreation::jobId)
+                    .containsExactlyInAnyOrderElementsOf(ids);
+        }
+    }
+
+    private UserCreationJournal open() throws IOException {
+        return open(Duration.ZERO);
+    }
+
+    private UserCreationJournal open(Duration maxCommitDelay) throws IOException {
+        UserCreationJournal journal = new UserCreationJournal(objectMapper, directory, SEGMENT_SIZE, maxCommitDelay);
+        journal.open();
+        opened.add(journal);
+        return journal;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> listing = Files.list(directory)) {
+            return listing.filter(path -> path.getFileName().toString().startsWith("segment-")).sorted().toList();
+        }
+    }
+
+    // Смещение последнего байта payload последней записи: перед CRC, сразу за ним нулевая длина конца сегмента
+    private static int lastPayloadByte(Path segment) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+        int position = 0;
+        int last = -1;
+        int recordSize;
+        while ((recordSize = buffer.getInt(position)) > 0) {
+            last = position + recordSize - Integer.BYTES - 1;
+            position += recordSize;
+        }
+        return last;
+    }
+
+    private static UserRequest request(String username) {
+        return new UserRequest(username, username + "@mail.ru", "secret", "Ivan", "Ivanov");
+    }
+}
@@ -0,0 +1,59 @@
+package com.itm.space.backendresources.role;
+
+import org.junit.jupiter.api.Test;
+import org.keycloak.representations.idm.GroupRepresentation;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверяем раскрытие ролей по графу без обращения к Keycloak.
+ */
+class RealmRoleGraphTest {
+
+    // admin -> moderator -> user, а viewer и user ссылаются друг на друга по кругу
+    private final RealmRoleGraph.Snapshot graph = RealmRoleGraph.Snapshot.build(
+            List.of("admin", "moderator", "user", "viewer", "auditor"),
+            Map.of("admin", Set.of("moderator"),
+                    "moderator", Set.of("user"),
+                    "user", Set.of("viewer"),
+                    "viewer", Set.of("user")),
+            List.of(group("staff", List.of("auditor"), List.of(group("moderators", List.of("moderator"), null)))));
+
+    @Test
+    void shouldExpandCompositeRolesTransitively() {
+        RoleSet roles = graph.expand(List.of("admin"));
+
+        assertThat(roles.names()).containsExactly("admin", "moderator", "user", "viewer");
+        assertThat(roles.contains("viewer")).isTrue();
+        assertThat(roles.contains("auditor")).isFalse();
+    }
+
+    @Test
+    void shouldInheritRolesFromParentGroups() {
+        RoleSet roles = graph.effectiveRoles(List.of(), List.of("moderators"));
+
+        // moderators вложена в staff, поэтому получает и auditor
+        assertThat(roles.names()).containsExactly("moderator", "user", "viewer", "auditor");
+    }
+
+    @Test
+    void shouldKeepRolesUnknownToGraph() {
+        RoleSet roles = graph.expand(List.of("user", "created-after-refresh"));
+
+        assertThat(roles.contains("created-after-refresh")).isTrue();
+        assertThat(roles.names()).containsExactly("user", "viewer", "created-after-refresh");
+    }
+
+    private static GroupRepresentation group(String id, List<String> realmRoles, List<GroupRepresentation> subGroups) {
+        GroupRepresentation group = new GroupRepresentation();
+        group.setId(id);
+        group.setName(id);
+        group.setRealmRoles(realmRoles);
+        group.setSubGroups(subGroups);
+        return group;
+    }
+}
@@ -0,0 +1,208 @@
+package com.itm.space.backendresources.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.proc.BadJOSEException;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Проверяем источник ключей против локального HTTP-сервера, отдающего JWKS, и снимка во временном каталоге.
+ */
+class CachedJwkSourceTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger jwksRequests = new AtomicInteger();
+    private HttpServer server;
+    private volatile JWKSet served;
+    private CachedJwkSource source;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void startServer() throws IOException, JOSEException {
+        served = new JWKSet(rsaKey("served"));
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/certs", exchange -> {
+            jwksRequests.incrementAndGet();
+            // Отдаём и приватную часть, чтобы проверить, что в снимок она не попадает
+            byte[] body = served.toString(false).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (source != null) {
+            source.shutdown();
+        }
+        server.stop(0);
+    }
+
+    @Nested
+    class Snapshot {
+
+        @Test
+        void keysShouldBeLoadedFromSnapshotWithoutRefresh() throws Exception {
+            Path snapshot = directory.resolve("jwks.json");
+            Files.writeString(snapshot, new JWKSet(rsaKey("from-snapshot")).toString(true));
+            source = source(snapshot, false, Duration.ofMinutes(1), "RS256");
+
+            source.start();
+
+            assertThat(select("from-snapshot")).hasSize(1);
+            // Неизвестный kid без фонового обновления тоже не идёт в сеть
+            assertThat(select("other")).isEmpty();
+            assertThat(jwksRequests.get()).isZero();
+        }
+
+        @Test
+        void unreadableSnapshotShouldBeIgnored() throws Exception {
+            Path snapshot = directory.resolve("jwks.json");
+            Files.writeString(snapshot, "{not json");
+            source = source(snapshot, false, Duration.ofMinutes(1), "RS256");
+
+            source.start();
+
+            assertThat(select("served")).isEmpty();
+        }
+
+        @Test
+        void refreshShouldReplaceSnapshotAtomicallyWithPublicKeysOnly() throws Exception {
+            Path snapshot = directory.resolve("keys").resolve("jwks.json");
+            source = source(snapshot, true, Duration.ofMinutes(1), "RS256");
+
+            source.start();
+            await(() -> Files.exists(snapshot));
+
+            JWKSet saved = JWKSet.parse(Files.readString(snapshot));
+            assertThat(saved.getKeyByKeyId("served")).isNotNull();
+            assertThat(saved.getKeyByKeyId("served").isPrivate()).isFalse();
+            try (Stream<Path> files = Files.list(snapshot.getParent())) {
+                // Временный файл переименован, а не оставлен рядом
+                assertThat(files).containsExactly(snapshot);
+            }
+            assertThat(select("served")).hasSize(1);
+        }
+    }
+
+    @Nested
+    class UnknownKey {
+
+        @Test
+        void unknownKidShouldTriggerOneRefreshPerInterval() throws Exception {
+            source = source(directory.resolve("jwks.json"), true, Duration.ofHours(1), "RS256");
+            source.start();
+            // Ждём по счётчику: запрос неизвестного ещё kid сам запустил бы обновление
+            await(() -> meterRegistry.get("security.jwks.refresh").tag("outcome", "success").counter().count() == 1);
+            served = new JWKSet(List.<JWK>of(rsaKey("served"), rsaKey("rotated")));
+
+            select("rotated");
+            select("rotated");
+            select("rotated");
+
+            await(() -> !select("rotated").isEmpty());
+            assertThat(jwksRequests.get()).isEqualTo(2);
+            assertThat(meterRegistry.get("security.jwks.unknown-key.throttled").counter().count())
+                    .isGreaterThanOrEqualTo(2);
+        }
+    }
+
+    @Nested
+    class Algorithms {
+
+        @Test
+        void configuredAlgorithmShouldBeAccepted() throws Exception {
+            ECKey ecKey = new ECKeyGenerator(Curve.P_256).keyID("ec").generate();
+            served = new JWKSet(ecKey);
+            source = source(directory.resolve("jwks.json"), true, Duration.ofMinutes(1), "RS256", "ES256");
+            source.start();
+            await(() -> !select("ec").isEmpty());
+
+            JWTClaimsSet claims = source.jwtProcessor().process(es256Token(ecKey), null);
+
+            assertThat(claims.getSubject()).isEqualTo("user");
+        }
+
+        @Test
+        void algorithmOutsideConfigurationShouldBeRejected() throws Exception {
+            ECKey ecKey = new ECKeyGenerator(Curve.P_256).keyID("ec").generate();
+            served = new JWKSet(ecKey);
+            source = source(directory.resolve("jwks.json"), true, Duration.ofMinutes(1), "RS256");
+            source.start();
+            await(() -> !select("ec").isEmpty());
+
+            assertThatThrownBy(() -> source.jwtProcessor().process(es256Token(ecKey), null))
+                    .isInstanceOf(BadJOSEException.class);
+        }
+    }
+
+    private CachedJwkSource source(Path snapshot, boolean refreshEnabled, Duration minRefreshInterval,
+                                   String... algorithms) throws IOException {
+        URL jwkSetUri = new URL("http://localhost:" + server.getAddress().getPort() + "/certs");
+        return new CachedJwkSource(meterRegistry, jwkSetUri, snapshot, Duration.ofHours(1), minRefreshInterval,
+                refreshEnabled, List.of(algorithms));
+    }
+
+    private List<?> select(String keyId) {
+        return source.get(new JWKSelector(new JWKMatcher.Builder().keyID(keyId).build()), null);
+    }
+
+    private static RSAKey rsaKey(String keyId) throws JOSEException {
+        return new RSAKeyGenerator(2048).keyID(keyId).generate();
+    }
+
+    private static SignedJWT es256Token(ECKey ecKey) throws JOSEException {
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.ES256).keyID(ecKey.getKeyID()).build(),
+                new JWTClaimsSet.Builder().subject("user").build());
+        jwt.sign(new ECDSASigner(ecKey));
+        return jwt;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.itm.space.backendresources.security;
+
+import com.itm.space.backendresources.role.RealmRoleGraph;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingJwtAuthenticationManagerTest {
+    private static final String TOKEN = "header.payload.signature";
+
+    private final AtomicInteger decodes = new AtomicInteger();
+    private final CachingJwtAuthenticationManager manager = manager();
+
+    @Test
+    void cachedTokenShouldGetNewAuthenticationWithOwnDetails() {
+        Authentication first = manager.authenticate(bearer("10.0.0.1"));
+        Authentication second = manager.authenticate(bearer("10.0.0.2"));
+
+        assertThat(decodes).hasValue(1);
+        // Аутентификация из кэша - новый объект, details первого запроса в неё не попадают
+        assertThat(second).isNotSameAs(first);
+        assertThat(first.getDetails()).isEqualTo("10.0.0.1");
+        assertThat(second.getDetails()).isEqualTo("10.0.0.2");
+        assertThat(second.getName()).isEqualTo(first.getName());
+        assertThat(second.getAuthorities()).containsExactlyElementsOf(first.getAuthorities());
+    }
+
+    @Test
+    void cachedTokenShouldKeepRoleSet() {
+        manager.authenticate(bearer("10.0.0.1"));
+
+        Authentication cached = manager.authenticate(bearer("10.0.0.1"));
+
+        assertThat(cached).isInstanceOfSatisfying(RoleSetAuthenticationToken.class,
+                token -> assertThat(token.getRoles().contains("MODERATOR")).isTrue());
+    }
+
+    private CachingJwtAuthenticationManager manager() {
+        RealmRoleGraph.Snapshot roleGraph = RealmRoleGraph.Snapshot.build(List.of("MODERATOR"), Map.of(), List.of());
+        JwtAuthenticationProvider provider = new JwtAuthenticationProvider(token -> {
+            decodes.incrementAndGet();
+            return jwt();
+        });
+        provider.setJwtAuthenticationConverter(new JwtAuthoritiesConverter(() -> roleGraph, 16));
+        return new CachingJwtAuthenticationManager(provider, new VerifiedTokenCache(new SimpleMeterRegistry(), 100));
+    }
+
+    private static BearerTokenAuthenticationToken bearer(String remoteAddress) {
+        BearerTokenAuthenticationToken bearer = new BearerTokenAuthenticationToken(TOKEN);
+        bearer.setDetails(remoteAddress);
+        return bearer;
+    }
+
+    private static Jwt jwt() {
+        return Jwt.withTokenValue(TOKEN)
+                .header("alg", "RS256")
+                .subject("user")
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(300))
+                .claim("realm_access", Map.of("roles", List.of("MODERATOR")))
+                .build();
+    }
+}
@@ -0,0 +1,99 @@
+package com.itm.space.backendresources.security;
+
+import com.itm.space.backendresources.role.RealmRoleGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение прежнего преобразования JWT в authorities с кэширующим {@link JwtAuthoritiesConverter}.
+ * Запуск: {@code mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * "-Dexec.args=-cp %classpath com.itm.space.backendresources.security.JwtAuthoritiesConverterBenchmark"}
+ * (exec:java не подходит: JMH запускает форк с {@code java.class.path}, где нет тестовых классов).
+ * Смотреть нужно на {@code gc.alloc.rate.norm} - байты на одно преобразование; результаты также пишутся
+ * в {@code target/jmh-JwtAuthoritiesConverterBenchmark.json}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthoritiesConverterBenchmark {
+    private Jwt jwt;
+    private JwtAuthoritiesConverter converter;
+
+    @Setup
+    public void setUp() {
+        jwt = Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject("0b4a2b8e-6e0a-4c3e-9a4c-3f1f0c7f5d21")
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(300))
+                .claim("realm_access", Map.of("roles",
+                        List.of("MODERATOR", "offline_access", "uma_authorization", "default-roles-itm")))
+                .build();
+        RealmRoleGraph.Snapshot roleGraph = RealmRoleGraph.Snapshot.build(
+                List.of("MODERATOR", "offline_access", "uma_authorization", "default-roles-itm"),
+                Map.of("default-roles-itm", Set.of("offline_access", "uma_authorization")),
+                List.of());
+        converter = new JwtAuthoritiesConverter(() -> roleGraph, 1024);
+    }
+
+    @Benchmark
+    public JwtAuthenticationToken legacy() {
+        return legacyConvert(jwt);
+    }
+
+    @Benchmark
+    public JwtAuthenticationToken cached() {
+        return converter.convert(jwt);
+    }
+
+    // Копия преобразования, которое раньше было в SecurityConfiguration
+    @SuppressWarnings("unchecked")
+    private static JwtAuthenticationToken legacyConvert(Jwt jwt) {
+        Collection<GrantedAuthority> authorities = new ArrayList<>();
+        JwtAuthenticationToken authenticationToken = new JwtAuthenticationToken(jwt, authorities);
+        Map<String, Object> realmAccess = jwt.getClaimAsMap("realm_access");
+        List<String> roles = (List<String>) realmAccess.get("roles");
+        for (String role : roles) {
+            authorities.add(new SimpleGrantedAuthority("ROLE_" + role));
+        }
+        return new JwtAuthenticationToken(jwt, authorities, authenticationToken.getName());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtAuthoritiesConverterBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("target/jmh-JwtAuthoritiesConverterBenchmark.json")
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,113 @@
+package com.itm.space.backendresources.security;
+
+import com.itm.space.backendresources.configuration.SecurityConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.method.AuthorizationManagerBeforeMethodInterceptor;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.web.util.ServletRequestPathUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение прежней проверки роли через {@code @Secured}-прокси с проверкой {@link PathAuthorizationManager}
+ * в цепочке фильтров. Запуск: {@code mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * "-Dexec.args=-cp %classpath com.itm.space.backendresources.security.PathAuthorizationManagerBenchmark"},
+ * результаты пишутся в {@code target/jmh-PathAuthorizationManagerBenchmark.json}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathAuthorizationManagerBenchmark {
+    private static final String MODERATOR = "ROLE_MODERATOR";
+    private static final String USER_ID = "5f1c9a2e-3b7d-4e8a-9c61-0d2f4b8a7e13";
+
+    private Authentication authentication;
+    private UserApi target;
+    private UserApi securedProxy;
+    private PathAuthorizationManager pathAuthorizationManager;
+    private MockHttpServletRequest request;
+    private RequestAuthorizationContext requestContext;
+
+    @Setup
+    public void setUp() {
+        authentication = new UsernamePasswordAuthenticationToken("moderator", null,
+                AuthorityUtils.createAuthorityList("ROLE_default-roles-itm", "ROLE_offline_access", MODERATOR));
+        SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_GLOBAL);
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+
+        target = new UserApi();
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvisor(AuthorizationManagerBeforeMethodInterceptor.secured());
+        securedProxy = (UserApi) proxyFactory.getProxy();
+
+        pathAuthorizationManager = SecurityConfiguration.userApiAuthorization();
+        request = new MockHttpServletRequest("GET", "/api/users/" + USER_ID);
+        requestContext = new RequestAuthorizationContext(request);
+    }
+
+    @TearDown
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public String securedProxy() {
+        return securedProxy.getUserById(USER_ID);
+    }
+
+    @Benchmark
+    public String pathRules() {
+        // В реальной цепочке путь разбирается заново для каждого запроса
+        ServletRequestPathUtils.clearParsedRequestPath(request);
+        AuthorizationDecision decision = pathAuthorizationManager.check(() -> authentication, requestContext);
+        if (!decision.isGranted()) {
+            throw new IllegalStateException("Access denied");
+        }
+        return target.getUserById(USER_ID);
+    }
+
+    public static class UserApi {
+
+        @Secured(MODERATOR)
+        public String getUserById(String id) {
+            return id;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PathAuthorizationManagerBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("target/jmh-PathAuthorizationManagerBenchmark.json")
+                .build())
+                .run();
+    }
+}
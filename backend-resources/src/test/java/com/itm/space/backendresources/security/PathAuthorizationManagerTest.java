@@ -0,0 +1,185 @@
+package com.itm.space.backendresources.security;
+
+import com.itm.space.backendresources.configuration.SecurityConfiguration;
+import com.itm.space.backendresources.role.RealmRoleGraph;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PathAuthorizationManagerTest {
+    private static final String USER_ID = "5f1c9a2e-3b7d-4e8a-9c61-0d2f4b8a7e13";
+
+    private final PathAuthorizationManager items = PathAuthorizationManager.builder()
+            .hasAuthority("/api/items/special", "ROLE_SPECIAL")
+            .hasAuthority("/api/items/{id}", "ROLE_READER")
+            .hasAuthority(HttpMethod.DELETE, "/api/items/{id}", "ROLE_ADMIN")
+            .hasAuthority("/api/items/**", "ROLE_ADMIN")
+            .permitAll("/public/**")
+            .build();
+
+    @Nested
+    class Precedence {
+
+        @Test
+        void literalShouldWinOverVariable() {
+            assertThat(granted(items, "GET", "/api/items/special", user("ROLE_SPECIAL"))).isTrue();
+            assertThat(granted(items, "GET", "/api/items/special", user("ROLE_READER"))).isFalse();
+        }
+
+        @Test
+        void variableShouldWinOverRest() {
+            assertThat(granted(items, "GET", "/api/items/42", user("ROLE_READER"))).isTrue();
+            assertThat(granted(items, "GET", "/api/items/42", user("ROLE_ADMIN"))).isFalse();
+        }
+
+        @Test
+        void restShouldMatchDeeperPathsAndItsOwnPrefix() {
+            assertThat(granted(items, "GET", "/api/items/42/history", user("ROLE_READER"))).isFalse();
+            assertThat(granted(items, "GET", "/api/items/42/history", user("ROLE_ADMIN"))).isTrue();
+            assertThat(granted(items, "GET", "/api/items", user("ROLE_ADMIN"))).isTrue();
+        }
+
+        @Test
+        void methodSpecificRuleShouldOverrideAnyMethodRule() {
+            assertThat(granted(items, "DELETE", "/api/items/42", user("ROLE_READER"))).isFalse();
+            assertThat(granted(items, "DELETE", "/api/items/42", user("ROLE_ADMIN"))).isTrue();
+        }
+    }
+
+    @Nested
+    class Paths {
+
+        @Test
+        void trailingSlashShouldMatchSameRule() {
+            assertThat(granted(items, "GET", "/api/items/42/", user("ROLE_READER"))).isTrue();
+        }
+
+        @Test
+        void percentEncodedSegmentsShouldBeDecodedBeforeMatching() {
+            PathAuthorizationManager userApi = SecurityConfiguration.userApiAuthorization();
+
+            // Раньше /api/%75sers/{id} не совпадал ни с одним правилом и пропускался без проверки
+            assertThat(granted(userApi, "GET", "/api/%75sers/" + USER_ID, user("ROLE_USER"))).isFalse();
+            assertThat(granted(userApi, "GET", "/api/%75sers/" + USER_ID, user("ROLE_MODERATOR"))).isTrue();
+            assertThat(granted(items, "GET", "/api/items/%73pecial", user("ROLE_READER"))).isFalse();
+        }
+
+        @Test
+        void matrixParametersShouldBeIgnored() {
+            PathAuthorizationManager userApi = SecurityConfiguration.userApiAuthorization();
+
+            assertThat(granted(userApi, "GET", "/api/users;a=b/" + USER_ID, user("ROLE_USER"))).isFalse();
+            assertThat(granted(userApi, "GET", "/api/users;a=b/" + USER_ID, user("ROLE_MODERATOR"))).isTrue();
+        }
+
+        @Test
+        void contextPathShouldBeStripped() {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/app/api/items/42");
+            request.setContextPath("/app");
+
+            assertThat(items.check(() -> user("ROLE_READER"), new RequestAuthorizationContext(request)).isGranted())
+                    .isTrue();
+        }
+    }
+
+    @Nested
+    class Defaults {
+
+        @Test
+        void unmatchedPathShouldBeDenied() {
+            assertThat(granted(items, "GET", "/other", user("ROLE_ADMIN"))).isFalse();
+            // Закодированный слэш склеивает сегменты, и путь не подходит ни под одно правило
+            assertThat(granted(items, "GET", "/api/items%2F42", user("ROLE_READER"))).isFalse();
+        }
+
+        @Test
+        void permitAllShouldAllowAnonymous() {
+            assertThat(granted(items, "GET", "/public/docs", anonymous())).isTrue();
+        }
+
+        @Test
+        void anonymousShouldBeDeniedOnProtectedPath() {
+            assertThat(granted(items, "GET", "/api/items/42", anonymous())).isFalse();
+        }
+
+        @Test
+        void userApiShouldKeepSwaggerActuatorAndErrorOpen() {
+            PathAuthorizationManager userApi = SecurityConfiguration.userApiAuthorization();
+
+            assertThat(granted(userApi, "GET", "/swagger-ui/index.html", anonymous())).isTrue();
+            assertThat(granted(userApi, "GET", "/v3/api-docs", anonymous())).isTrue();
+            assertThat(granted(userApi, "GET", "/actuator/health", anonymous())).isTrue();
+            assertThat(granted(userApi, "GET", "/error", anonymous())).isTrue();
+            assertThat(granted(userApi, "GET", "/api/users/jobs/1", anonymous())).isFalse();
+        }
+
+        @Test
+        void roleSetTokenShouldBeCheckedByRole() {
+            PathAuthorizationManager userApi = SecurityConfiguration.userApiAuthorization();
+            RealmRoleGraph.Snapshot roleGraph = RealmRoleGraph.Snapshot.build(
+                    List.of("MODERATOR", "USER"), Map.of(), List.of());
+            JwtAuthoritiesConverter converter = new JwtAuthoritiesConverter(() -> roleGraph, 16);
+
+            assertThat(granted(userApi, "GET", "/api/users/" + USER_ID, converter.convert(jwt("MODERATOR"))))
+                    .isTrue();
+            assertThat(granted(userApi, "GET", "/api/users/" + USER_ID, converter.convert(jwt("USER"))))
+                    .isFalse();
+        }
+    }
+
+    @Nested
+    class Rules {
+
+        @Test
+        void restWildcardShouldBeLastSegment() {
+            assertThatThrownBy(() -> PathAuthorizationManager.builder().hasAuthority("/api/**/items", "ROLE_A"))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+
+        @Test
+        void duplicateRuleShouldBeRejected() {
+            assertThatThrownBy(() -> PathAuthorizationManager.builder()
+                    .hasAuthority("/api/{id}", "ROLE_A")
+                    .hasAuthority("/api/*", "ROLE_B"))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    private static boolean granted(PathAuthorizationManager manager, String method, String uri,
+                                   Authentication authentication) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        return manager.check(() -> authentication, new RequestAuthorizationContext(request)).isGranted();
+    }
+
+    private static Authentication user(String authority) {
+        return new UsernamePasswordAuthenticationToken("user", null, AuthorityUtils.createAuthorityList(authority));
+    }
+
+    private static Authentication anonymous() {
+        return new AnonymousAuthenticationToken("key", "anonymous", AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS"));
+    }
+
+    private static Jwt jwt(String role) {
+        return Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject("user")
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(300))
+                .claim("realm_access", Map.of("roles", List.of(role)))
+                .build();
+    }
+}
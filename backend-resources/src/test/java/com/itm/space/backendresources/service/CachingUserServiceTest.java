@@ -0,0 +1,252 @@
+package com.itm.space.backendresources.service;
+
+import com.itm.space.backendresources.api.request.UserInclude;
+import com.itm.space.backendresources.api.request.UserRequest;
+import com.itm.space.backendresources.api.response.UserResponse;
+import com.itm.space.backendresources.exception.BackendResourcesException;
+import com.itm.space.backendresources.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Проверяем кэш пользователей поверх замоканного {@link UserServiceImpl}, без Keycloak.
+ */
+class CachingUserServiceTest {
+    private static final UUID USER_ID = UUID.randomUUID();
+
+    private final UserServiceImpl delegate = mock(UserServiceImpl.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CachingUserService cachingUserService;
+
+    @AfterEach
+    void tearDown() {
+        cachingUserService.shutdown();
+    }
+
+    @Nested
+    class Lookup {
+
+        @Test
+        void secondLookupShouldBeServedFromCache() {
+            cachingUserService = service(Duration.ofMinutes(1), Duration.ofMinutes(1));
+            when(delegate.getUserById(USER_ID)).thenReturn(user());
+
+            UserResponse first = cachingUserService.getUserById(USER_ID);
+            UserResponse second = cachingUserService.getUserById(USER_ID);
+
+            assertThat(second).isSameAs(first);
+            verify(delegate, times(1)).getUserById(USER_ID);
+            assertThat(meterRegistry.get("cache.gets").tag("cache", "users").tag("result", "hit")
+                    .functionCounter().count()).isEqualTo(1);
+        }
+
+        @Test
+        void missLoadsShouldBeRecordedInCacheStats() {
+            cachingUserService = service(Duration.ofMinutes(1), Duration.ofMinutes(1));
+            UUID missingId = UUID.randomUUID();
+            when(delegate.getUserById(USER_ID)).thenReturn(user());
+            when(delegate.getUserById(missingId))
+                    .thenThrow(new BackendResourcesException("User not found", HttpStatus.NOT_FOUND));
+
+            cachingUserService.getUserById(USER_ID);
+            assertThatThrownBy(() -> cachingUserService.getUserById(missingId))
+                    .isInstanceOf(BackendResourcesException.class);
+
+            assertThat(meterRegistry.get("cache.gets").tag("cache", "users").tag("result", "miss")
+                    .functionCounter().count()).isEqualTo(2);
+            assertThat(meterRegistry.get("cache.load").tag("cache", "users").tag("result", "success")
+                    .functionCounter().count()).isEqualTo(1);
+            assertThat(meterRegistry.get("cache.load").tag("cache", "users").tag("result", "failure")
+                    .functionCounter().count()).isEqualTo(1);
+        }
+
+        @Test
+        void missLoadShouldNotOverwriteEntryWrittenDuringLoad() throws Exception {
+            cachingUserService = service(Duration.ofMinutes(1), Duration.ofMinutes(1));
+            CountDownLatch missLoadStarted = new CountDownLatch(1);
+            CountDownLatch missLoadReleased = new CountDownLatch(1);
+            UserResponse stale = user();
+            UserResponse fresh = user();
+            AtomicInteger loads = new AtomicInteger();
+            when(delegate.createUser(any())).thenReturn(USER_ID);
+            when(delegate.getUserById(USER_ID)).thenAnswer(invocation -> {
+                if (loads.getAndIncrement() > 0) {
+                    return fresh;
+                }
+                missLoadStarted.countDown();
+                missLoadReleased.await();
+                return stale;
+            });
+            ExecutorService reader = Executors.newSingleThreadExecutor();
+            try {
+                Future<UserResponse> miss = reader.submit(() -> cachingUserService.getUserById(USER_ID));
+                assertThat(missLoadStarted.await(2, TimeUnit.SECONDS)).isTrue();
+                // Прогрев после создания успевает записать более свежую версию, пока промах ещё грузится
+                cachingUserService.createUser(new UserRequest("ivan", "ivan@mail.ru", "secret", "Ivan", "Ivanov"));
+                awaitCacheSize(1);
+                missLoadReleased.countDown();
+
+                assertThat(miss.get(2, TimeUnit.SECONDS)).isSameAs(fresh);
+                assertThat(cachingUserService.getUserById(USER_ID)).isSameAs(fresh);
+            } finally {
+                missLoadReleased.countDown();
+                reader.shutdownNow();
+            }
+        }
+
+        @Test
+        void staleEntryShouldBeRefreshedOnRefreshExecutor() {
+            cachingUserService = service(Duration.ofMinutes(1), Duration.ofMillis(50));
+            List<String> loadingThreads = new CopyOnWriteArrayList<>();
+            when(delegate.getUserById(USER_ID)).thenAnswer(invocation -> {
+                loadingThreads.add(Thread.currentThread().getName());
+                return user();
+            });
+            cachingUserService.getUserById(USER_ID);
+
+            sleep(Duration.ofMillis(100));
+            // Устаревшая запись отдаётся сразу, а перезагрузка уходит в фоновый пул
+            assertThat(cachingUserService.getUserById(USER_ID)).isNotNull();
+
+            verify(delegate, timeout(2000).times(2)).getUserById(USER_ID);
+            assertThat(loadingThreads.get(1)).startsWith("user-cache-refresh-");
+        }
+    }
+
+    @Nested
+    class Create {
+
+        @Test
+        void createdUserShouldBeWarmedOnRefreshExecutor() throws InterruptedException {
+            cachingUserService = service(Duration.ofMinutes(1), Duration.ofMinutes(1));
+            List<String> loadingThreads = new CopyOnWriteArrayList<>();
+            when(delegate.createUser(any())).thenReturn(USER_ID);
+            when(delegate.getUserById(USER_ID)).thenAnswer(invocation -> {
+                loadingThreads.add(Thread.currentThread().getName());
+                return user();
+            });
+
+            assertThat(cachingUserService.createUser(
+                    new UserRequest("ivan", "ivan@mail.ru", "secret", "Ivan", "Ivanov"))).isEqualTo(USER_ID);
+            awaitCacheSize(1);
+
+            assertThat(loadingThreads).singleElement().asString().startsWith("user-cache-refresh-");
+            // Первое чтение после создания уже не идёт в Keycloak
+            cachingUserService.getUserById(USER_ID);
+            verify(delegate, times(1)).getUserById(USER_ID);
+        }
+    }
+
+    @Nested
+    class Include {
+
+        @Test
+        void partialIncludeShouldBeProjectedFromCachedEntry() {
+            cachingUserService = service(Duration.ofMinutes(1), Duration.ofMinutes(1));
+            when(delegate.getUserById(USER_ID)).thenReturn(user());
+            cachingUserService.getUserById(USER_ID);
+
+            UserResponse roles = cachingUserService.getUserById(USER_ID, Set.of(UserInclude.ROLES));
+
+            assertThat(roles.getRoles()).containsExactly("user");
+            assertThat(roles.getGroups()).isNull();
+            assertThat(roles.getEffectiveRoles()).isNull();
+            verify(delegate, never()).getUserById(any(UUID.class), anySet());
+        }
+
+        @Test
+        void partialIncludeShouldGoToDelegateOnMiss() {
+            cachingUserService = service(Duration.ofMinutes(1), Duration.ofMinutes(1));
+            UserResponse groupsOnly = new UserResponse("Ivan", "Ivanov", "ivan@mail.ru", null, List.of("staff"));
+            when(delegate.getUserById(USER_ID, Set.of(UserInclude.GROUPS))).thenReturn(groupsOnly);
+
+            assertThat(cachingUserService.getUserById(USER_ID, Set.of(UserInclude.GROUPS))).isSameAs(groupsOnly);
+            // Неполный ответ в кэш не попадает
+            assertThat(cachingUserService.getUserById(USER_ID, Set.of(UserInclude.GROUPS))).isSameAs(groupsOnly);
+            verify(delegate, times(2)).getUserById(USER_ID, Set.of(UserInclude.GROUPS));
+        }
+    }
+
+    @Nested
+    class LastKnown {
+
+        @Test
+        void expiredEntryShouldBeServedWhileKeycloakIsUnavailable() {
+            cachingUserService = service(Duration.ofMillis(50), Duration.ofMinutes(1));
+            UserResponse user = user();
+            when(delegate.getUserById(USER_ID)).thenReturn(user)
+                    .thenThrow(new ServiceUnavailableException("Keycloak is unavailable", Duration.ofSeconds(5)));
+            cachingUserService.getUserById(USER_ID);
+
+            sleep(Duration.ofMillis(100));
+
+            assertThat(cachingUserService.getUserById(USER_ID)).isSameAs(user);
+            assertThat(meterRegistry.get("users.cache.stale-reads").counter().count()).isEqualTo(1);
+        }
+
+        @Test
+        void unavailableKeycloakShouldFailLookupWithoutLastKnownValue() {
+            cachingUserService = service(Duration.ofMinutes(1), Duration.ofMinutes(1));
+            when(delegate.getUserById(USER_ID))
+                    .thenThrow(new ServiceUnavailableException("Keycloak is unavailable", Duration.ofSeconds(5)));
+
+            assertThatThrownBy(() -> cachingUserService.getUserById(USER_ID))
+                    .isInstanceOf(ServiceUnavailableException.class);
+            assertThat(meterRegistry.get("users.cache.stale-reads").counter().count()).isZero();
+        }
+    }
+
+    private CachingUserService service(Duration expireAfterWrite, Duration refreshAfterWrite) {
+        return new CachingUserService(delegate, mock(UserBatchResolver.class), meterRegistry,
+                100, expireAfterWrite, refreshAfterWrite, 1, Duration.ofMinutes(10));
+    }
+
+    private void awaitCacheSize(double expected) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+        while (meterRegistry.get("cache.size").tag("cache", "users").gauge().value() < expected) {
+            assertThat(System.nanoTime()).as("cache was not warmed in time").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static UserResponse user() {
+        UserResponse user = new UserResponse("Ivan", "Ivanov", "ivan@mail.ru", List.of("user"), List.of("staff"));
+        user.setEffectiveRoles(List.of("user", "viewer"));
+        return user;
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.itm.space.backendresources.service;
+
+import com.itm.space.backendresources.exception.BackendResourcesException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotentRequestStoreTest {
+    private final IdempotentRequestStore store = new IdempotentRequestStore(100, Duration.ofMinutes(1));
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @Test
+    void repeatShouldGetStoredResult() {
+        assertThat(store.execute("key", "request", () -> executions.incrementAndGet())).isEqualTo(1);
+        assertThat(store.execute("key", "request", () -> executions.incrementAndGet())).isEqualTo(1);
+    }
+
+    @Test
+    void differentRequestWithSameKeyShouldBeRejected() {
+        store.execute("key", "request", () -> executions.incrementAndGet());
+
+        assertThatThrownBy(() -> store.execute("key", "other request", () -> executions.incrementAndGet()))
+                .isInstanceOfSatisfying(BackendResourcesException.class,
+                        ex -> assertThat(ex.getHttpStatus()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY));
+    }
+
+    @Test
+    void serverErrorShouldReleaseKey() {
+        assertThatThrownBy(() -> store.execute("key", "request", () -> {
+            throw new BackendResourcesException("Keycloak is down", HttpStatus.SERVICE_UNAVAILABLE);
+        })).isInstanceOf(BackendResourcesException.class);
+
+        assertThat(store.execute("key", "request", () -> executions.incrementAndGet())).isEqualTo(1);
+    }
+
+    @Test
+    void errorShouldReleaseKey() {
+        assertThatThrownBy(() -> store.execute("key", "request", () -> {
+            throw new StackOverflowError();
+        })).isInstanceOf(StackOverflowError.class);
+
+        // Повтор выполняется заново, а не ждёт результата, который никогда не наступит
+        assertThat(store.execute("key", "request", () -> executions.incrementAndGet())).isEqualTo(1);
+    }
+}
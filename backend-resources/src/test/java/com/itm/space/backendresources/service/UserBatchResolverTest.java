@@ -0,0 +1,107 @@
+package com.itm.space.backendresources.service;
+
+import com.itm.space.backendresources.api.response.UserBatchItemResponse;
+import com.itm.space.backendresources.api.response.UserResponse;
+import com.itm.space.backendresources.exception.BackendResourcesException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UserBatchResolverTest {
+    private static final Duration TIMEOUT = Duration.ofMillis(300);
+
+    private final UserBatchResolver resolver = new UserBatchResolver(50, 2, 4, TIMEOUT);
+
+    @AfterEach
+    void tearDown() {
+        resolver.shutdown();
+    }
+
+    @Test
+    void shouldPreserveOrderOfIds() {
+        List<UUID> ids = ids(10);
+
+        List<UserBatchItemResponse> response = resolver.resolve(ids, id -> user(id.toString()));
+
+        assertThat(response).extracting(UserBatchItemResponse::getId).containsExactlyElementsOf(ids);
+        assertThat(response).extracting(item -> item.getUser().getFirstName())
+                .containsExactlyElementsOf(ids.stream().map(UUID::toString).toList());
+    }
+
+    @Test
+    void slowLookupsShouldNotExceedBatchTimeout() {
+        List<UUID> ids = ids(10);
+        long started = System.nanoTime();
+
+        // 10 id по 200 мс на двух воркерах - около секунды, а таймаут батча 300 мс
+        List<UserBatchItemResponse> response = resolver.resolve(ids, id -> {
+            sleep(Duration.ofMillis(200));
+            return user(id.toString());
+        });
+
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(TIMEOUT.plusMillis(150));
+        assertThat(response).extracting(UserBatchItemResponse::getId).containsExactlyElementsOf(ids);
+        // Первые два id успели загрузиться, следующие два прерваны по таймауту, а остальные воркеры уже не брали
+        assertThat(response.subList(0, 2)).allSatisfy(item -> assertThat(item.getUser()).isNotNull());
+        assertThat(response.subList(2, ids.size())).allSatisfy(item -> assertThat(item.getUser()).isNull());
+        assertThat(response.subList(4, ids.size()))
+                .allSatisfy(item -> assertThat(item.getStatus()).isEqualTo(HttpStatus.GATEWAY_TIMEOUT.value()));
+    }
+
+    @Test
+    void failedLookupShouldNotFailWholeBatch() {
+        List<UUID> ids = ids(3);
+
+        List<UserBatchItemResponse> response = resolver.resolve(ids, id -> {
+            if (id.equals(ids.get(1))) {
+                throw new BackendResourcesException("User not found", HttpStatus.NOT_FOUND);
+            }
+            return user(id.toString());
+        });
+
+        assertThat(response.get(0).getUser()).isNotNull();
+        assertThat(response.get(1).getStatus()).isEqualTo(HttpStatus.NOT_FOUND.value());
+        assertThat(response.get(2).getUser()).isNotNull();
+    }
+
+    @Test
+    void batchOfMaxSizeShouldBeResolved() {
+        List<UUID> ids = ids(50);
+
+        List<UserBatchItemResponse> response = resolver.resolve(ids, id -> user(id.toString()));
+
+        assertThat(response).hasSize(50).allSatisfy(item -> assertThat(item.getUser()).isNotNull());
+    }
+
+    @Test
+    void tooManyIdsShouldBeRejected() {
+        assertThatThrownBy(() -> resolver.resolve(ids(51), id -> user("any")))
+                .isInstanceOfSatisfying(BackendResourcesException.class,
+                        ex -> assertThat(ex.getHttpStatus()).isEqualTo(HttpStatus.BAD_REQUEST));
+    }
+
+    private static List<UUID> ids(int count) {
+        return IntStream.range(0, count).mapToObj(i -> UUID.randomUUID()).toList();
+    }
+
+    private static UserResponse user(String firstName) {
+        return new UserResponse(firstName, "Ivanov", "ivan@mail.ru", List.of(), List.of());
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+}
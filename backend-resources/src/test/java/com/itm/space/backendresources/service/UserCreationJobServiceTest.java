@@ -0,0 +1,129 @@
+package com.itm.space.backendresources.service;
+
+import com.itm.space.backendresources.api.request.UserRequest;
+import com.itm.space.backendresources.api.response.UserCreationJobResponse;
+import com.itm.space.backendresources.api.response.UserCreationJobResponse.Status;
+import com.itm.space.backendresources.exception.BackendResourcesException;
+import com.itm.space.backendresources.outbox.UserCreationJournal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+
+import javax.ws.rs.ProcessingException;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Проверяем, какие заявки задача убирает из журнала: повторить после рестарта нужно всё, что не завершилось окончательно.
+ */
+class UserCreationJobServiceTest {
+    private final UserService userService = mock(UserService.class);
+    private final UserCreationJournal journal = mock(UserCreationJournal.class);
+    private UserCreationJobService jobService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ObjectProvider<UserCreationJournal> journalProvider = mock(ObjectProvider.class);
+        when(journalProvider.getIfAvailable()).thenReturn(journal);
+        jobService = new UserCreationJobService(userService, journalProvider, new SimpleMeterRegistry(),
+                1, 10, 100, Duration.ofMinutes(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        jobService.shutdown();
+    }
+
+    @Nested
+    class Journal {
+
+        @Test
+        void succeededJobShouldBeMarkedDone() throws Exception {
+            when(userService.createUser(any())).thenReturn(UUID.randomUUID());
+
+            UUID jobId = awaitCompletion(Status.SUCCEEDED);
+
+            verify(journal, timeout(1000)).markDone(jobId);
+        }
+
+        @Test
+        void conflictShouldBeMarkedDone() throws Exception {
+            // Пользователь уже создан, например, прошлой попыткой до рестарта
+            when(userService.createUser(any()))
+                    .thenThrow(new BackendResourcesException("User exists", HttpStatus.CONFLICT));
+
+            UUID jobId = awaitCompletion(Status.FAILED);
+
+            verify(journal, timeout(1000)).markDone(jobId);
+        }
+
+        @Test
+        void unavailableKeycloakShouldKeepJobInJournal() throws Exception {
+            when(userService.createUser(any()))
+                    .thenThrow(new BackendResourcesException("Connection refused", HttpStatus.SERVICE_UNAVAILABLE));
+
+            UUID jobId = awaitCompletion(Status.FAILED);
+
+            verify(journal, after(100).never()).markDone(jobId);
+        }
+
+        @Test
+        void unexpectedExceptionShouldKeepJobInJournal() throws Exception {
+            when(userService.createUser(any())).thenThrow(new ProcessingException("Connection reset"));
+
+            UUID jobId = awaitCompletion(Status.FAILED);
+
+            verify(journal, after(100).never()).markDone(jobId);
+        }
+
+        @Test
+        void queuedJobsShouldNotBeMarkedDoneOnShutdown() throws Exception {
+            CountDownLatch started = new CountDownLatch(1);
+            when(userService.createUser(any())).thenAnswer(invocation -> {
+                started.countDown();
+                new CountDownLatch(1).await();
+                return UUID.randomUUID();
+            });
+            jobService.submit(request("running"));
+            jobService.submit(request("queued"));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            jobService.shutdown();
+
+            // Ни прерванная задача, ни оставшаяся в очереди не отмечаются
+            verify(journal, after(100).never()).markDone(any());
+        }
+    }
+
+    private UUID awaitCompletion(Status expected) throws InterruptedException {
+        UUID jobId = jobService.submit(request("ivan")).getId();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        UserCreationJobResponse job = jobService.getJob(jobId);
+        while (job.getCompletedAt() == null) {
+            assertThat(System.nanoTime()).as("job did not complete in time").isLessThan(deadline);
+            Thread.sleep(10);
+            job = jobService.getJob(jobId);
+        }
+        assertThat(job.getStatus()).isEqualTo(expected);
+        return jobId;
+    }
+
+    private static UserRequest request(String username) {
+        return new UserRequest(username, username + "@mail.ru", "secret", "Ivan", "Ivanov");
+    }
+}
@@ -51,7 +51,7 @@ class UserServiceImplIntegrationTest extends BaseIntegrationTest {
             UserRequest userRequest = createValidUserRequest();
 
             mvc.perform(requestWithContent(post("/api/users"), userRequest))
-                    .andExpect(status().isOk());
+                    .andExpect(status().isCreated());
 
             createdUserId = findUserIdByUsername(userRequest.getUsername());
         }
@@ -69,7 +69,7 @@ class UserServiceImplIntegrationTest extends BaseIntegrationTest {
 
             // Сначала создаем пользователя
             mvc.perform(requestWithContent(post("/api/users"), userRequest))
-                    .andExpect(status().isOk());
+                    .andExpect(status().isCreated());
 
             // Теперь повторяем запрос, чтобы создать пользователя с теми же данными, что уже есть
             mvc.perform(requestWithContent(post("/api/users"), userRequest))
@@ -0,0 +1,165 @@
+package com.itm.space.backendresources.service;
+
+import com.itm.space.backendresources.api.response.UserResponse;
+import com.itm.space.backendresources.exception.BackendResourcesException;
+import com.itm.space.backendresources.keycloak.KeycloakUserGateway;
+import com.itm.space.backendresources.mapper.UserMapperImpl;
+import com.itm.space.backendresources.role.RealmRoleGraph;
+import com.itm.space.backendresources.util.RequestDeadline;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Проверяем, что каждый запрос ждёт общую загрузку с тем же id не дольше своего дедлайна,
+ * а загрузка, которую перестали ждать все, отменяется.
+ */
+class UserServiceImplTest {
+    private static final UUID USER_ID = UUID.randomUUID();
+
+    private final KeycloakUserGateway keycloakUserGateway = mock(KeycloakUserGateway.class);
+    private final ExecutorService keycloakExecutor = Executors.newFixedThreadPool(4);
+    private final ExecutorService callers = Executors.newFixedThreadPool(2);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch keycloakReleased = new CountDownLatch(1);
+    private final CountDownLatch keycloakInterrupted = new CountDownLatch(1);
+    private UserServiceImpl userService;
+
+    @BeforeEach
+    void setUp() {
+        userService = new UserServiceImpl(keycloakUserGateway, new UserMapperImpl(), keycloakExecutor, meterRegistry,
+                mock(UserBatchResolver.class), mock(UserBulkImporter.class), mock(RealmRoleGraph.class));
+        ReflectionTestUtils.setField(userService, "lookupTimeout", Duration.ofSeconds(5));
+        userService.registerMetrics();
+        when(keycloakUserGateway.getUser(USER_ID)).thenAnswer(invocation -> {
+            try {
+                keycloakReleased.await();
+            } catch (InterruptedException ex) {
+                keycloakInterrupted.countDown();
+                throw new IllegalStateException(ex);
+            }
+            UserRepresentation user = new UserRepresentation();
+            user.setFirstName("Ivan");
+            return user;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        keycloakReleased.countDown();
+        callers.shutdownNow();
+        keycloakExecutor.shutdownNow();
+    }
+
+    @Nested
+    class CoalescedLookup {
+
+        @Test
+        void leaderDeadlineShouldNotFailFollowers() throws Exception {
+            // Лидер с коротким дедлайном начинает загрузку, второй запрос без дедлайна к ней присоединяется
+            CompletableFuture<Object> leader = lookup(Duration.ofMillis(100));
+            awaitCount("originating", 1);
+            CompletableFuture<Object> follower = lookup(null);
+            awaitCount("coalesced", 1);
+
+            // Лидер ждёт не дольше своего дедлайна, а загрузка продолжается для второго запроса
+            assertThat(leader.get(5, TimeUnit.SECONDS))
+                    .isInstanceOfSatisfying(BackendResourcesException.class,
+                            ex -> assertThat(ex.getHttpStatus()).isEqualTo(HttpStatus.GATEWAY_TIMEOUT));
+            assertThat(follower).isNotDone();
+
+            keycloakReleased.countDown();
+            assertThat(follower.get(5, TimeUnit.SECONDS)).isInstanceOf(UserResponse.class);
+            assertThat(keycloakInterrupted.getCount()).isEqualTo(1);
+            verify(keycloakUserGateway, times(1)).getUser(USER_ID);
+        }
+
+        @Test
+        void abandonedLookupShouldInterruptKeycloakCall() throws Exception {
+            CompletableFuture<Object> lookup = lookup(Duration.ofMillis(100));
+
+            assertThat(lookup.get(5, TimeUnit.SECONDS))
+                    .isInstanceOfSatisfying(BackendResourcesException.class,
+                            ex -> assertThat(ex.getHttpStatus()).isEqualTo(HttpStatus.GATEWAY_TIMEOUT));
+            // Ждать больше некому, поэтому вызов Keycloak прерывается, а не держит поток до lookup-timeout
+            assertThat(keycloakInterrupted.await(5, TimeUnit.SECONDS)).isTrue();
+        }
+
+        @Test
+        void followerShouldStopWaitingAtItsOwnDeadline() throws Exception {
+            CompletableFuture<Object> leader = lookup(null);
+            awaitCount("originating", 1);
+            CompletableFuture<Object> follower = lookup(Duration.ofMillis(100));
+
+            // Загрузка ещё не закончилась, а ожидающий уже получил 504 по своему дедлайну
+            assertThat(follower.get(5, TimeUnit.SECONDS))
+                    .isInstanceOfSatisfying(BackendResourcesException.class,
+                            ex -> assertThat(ex.getHttpStatus()).isEqualTo(HttpStatus.GATEWAY_TIMEOUT));
+            assertThat(leader).isNotDone();
+
+            keycloakReleased.countDown();
+            assertThat(leader.get(5, TimeUnit.SECONDS)).isInstanceOf(UserResponse.class);
+        }
+
+        @Test
+        void expiredDeadlineShouldFailWithoutKeycloakCall() {
+            RequestDeadline.set(Duration.ZERO);
+            try {
+                assertThatThrownBy(() -> userService.getUserById(USER_ID, Set.of()))
+                        .isInstanceOfSatisfying(BackendResourcesException.class,
+                                ex -> assertThat(ex.getHttpStatus()).isEqualTo(HttpStatus.GATEWAY_TIMEOUT));
+            } finally {
+                RequestDeadline.clear();
+            }
+            verify(keycloakUserGateway, times(0)).getUser(USER_ID);
+        }
+    }
+
+    // Результат или исключение вызова getUserById в отдельном потоке со своим дедлайном
+    private CompletableFuture<Object> lookup(Duration deadline) {
+        return CompletableFuture.supplyAsync(() -> {
+            if (deadline != null) {
+                RequestDeadline.set(deadline);
+            }
+            try {
+                return userService.getUserById(USER_ID, Set.of());
+            } catch (BackendResourcesException ex) {
+                return ex;
+            } finally {
+                RequestDeadline.clear();
+            }
+        }, callers);
+    }
+
+    private void awaitCount(String type, double expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("users.lookup.requests").tag("type", type).functionCounter().count() < expected) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("users.lookup.requests{type=" + type + "} did not reach " + expected);
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.itm.space.backendresources.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveLimiterTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void callsBeyondLimitShouldBeRejected() {
+        AdaptiveLimiter limiter = limiter(2, 1, 10, Duration.ofSeconds(1));
+
+        AdaptiveLimiter.Permit first = limiter.tryAcquire();
+        AdaptiveLimiter.Permit second = limiter.tryAcquire();
+
+        assertThat(first).isNotNull();
+        assertThat(second).isNotNull();
+        assertThat(limiter.tryAcquire()).isNull();
+        assertThat(meterRegistry.get("concurrency.limiter.rejected").counter().count()).isEqualTo(1);
+
+        first.ignore();
+        assertThat(limiter.tryAcquire()).isNotNull();
+    }
+
+    @Test
+    void limitShouldGrowWhileFullyUsedAndFast() {
+        AdaptiveLimiter limiter = limiter(2, 1, 4, Duration.ofSeconds(1));
+
+        for (int round = 0; round < 50; round++) {
+            releaseAll(acquireAll(limiter));
+        }
+
+        // Растёт на единицу примерно за limit вызовов, но не выше maxLimit
+        assertThat(limiter.getLimit()).isEqualTo(4);
+    }
+
+    @Test
+    void limitShouldNotGrowWhenUnused() {
+        AdaptiveLimiter limiter = limiter(4, 1, 10, Duration.ofSeconds(1));
+
+        for (int i = 0; i < 50; i++) {
+            limiter.tryAcquire().success();
+        }
+
+        assertThat(limiter.getLimit()).isEqualTo(4);
+    }
+
+    @Test
+    void droppedCallShouldBackOff() {
+        AdaptiveLimiter limiter = limiter(10, 8, 10, Duration.ofSeconds(1));
+
+        limiter.tryAcquire().dropped();
+        assertThat(limiter.getLimit()).isEqualTo(9);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire().dropped();
+        }
+        assertThat(limiter.getLimit()).isEqualTo(8);
+    }
+
+    @Test
+    void slowCallShouldBackOff() throws InterruptedException {
+        AdaptiveLimiter limiter = limiter(10, 1, 10, Duration.ofMillis(10));
+
+        AdaptiveLimiter.Permit permit = limiter.tryAcquire();
+        Thread.sleep(30);
+        permit.success();
+
+        assertThat(limiter.getLimit()).isEqualTo(9);
+    }
+
+    @Test
+    void ignoredCallShouldNotChangeLimit() throws InterruptedException {
+        AdaptiveLimiter limiter = limiter(10, 1, 10, Duration.ofMillis(10));
+
+        AdaptiveLimiter.Permit permit = limiter.tryAcquire();
+        Thread.sleep(30);
+        permit.ignore();
+        // Повторное освобождение не считается вторым вызовом
+        permit.dropped();
+
+        assertThat(limiter.getLimit()).isEqualTo(10);
+        assertThat(meterRegistry.get("concurrency.limiter.in-flight").gauge().value()).isZero();
+    }
+
+    private AdaptiveLimiter limiter(int initialLimit, int minLimit, int maxLimit, Duration latencyTarget) {
+        return new AdaptiveLimiter("test",
+                new AdaptiveLimiter.Settings(initialLimit, minLimit, maxLimit, latencyTarget), meterRegistry);
+    }
+
+    private static List<AdaptiveLimiter.Permit> acquireAll(AdaptiveLimiter limiter) {
+        List<AdaptiveLimiter.Permit> permits = new ArrayList<>();
+        AdaptiveLimiter.Permit permit;
+        while ((permit = limiter.tryAcquire()) != null) {
+            permits.add(permit);
+        }
+        return permits;
+    }
+
+    private static void releaseAll(List<AdaptiveLimiter.Permit> permits) {
+        permits.forEach(AdaptiveLimiter.Permit::success);
+    }
+}
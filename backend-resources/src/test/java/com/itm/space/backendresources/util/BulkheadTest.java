@@ -0,0 +1,121 @@
+package com.itm.space.backendresources.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BulkheadTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService callers = Executors.newFixedThreadPool(4);
+    private final CountDownLatch callsReleased = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        callsReleased.countDown();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void callBeyondQueueShouldBeRejectedImmediately() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("test", 1, 1, Duration.ofSeconds(5), meterRegistry);
+        CompletableFuture<String> running = blockingCall(bulkhead);
+        awaitGauge("bulkhead.calls.active", 1);
+        CompletableFuture<String> waiting = blockingCall(bulkhead);
+        awaitGauge("bulkhead.calls.queued", 1);
+
+        assertThatThrownBy(() -> bulkhead.execute(() -> "rejected"))
+                .isInstanceOf(RejectedExecutionException.class)
+                .hasMessageContaining("is full");
+        assertThat(rejections("queue-full")).isEqualTo(1);
+
+        callsReleased.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+        assertThat(waiting.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+        assertThat(gauge("bulkhead.calls.queued")).isZero();
+    }
+
+    @Test
+    void queuedCallShouldBeRejectedAfterMaxWait() {
+        Bulkhead bulkhead = new Bulkhead("test", 1, 1, Duration.ofMillis(50), meterRegistry);
+        blockingCall(bulkhead);
+        awaitGauge("bulkhead.calls.active", 1);
+
+        assertThatThrownBy(() -> bulkhead.execute(() -> "timed out"))
+                .isInstanceOf(RejectedExecutionException.class)
+                .hasMessageContaining("Timed out");
+        assertThat(rejections("timeout")).isEqualTo(1);
+        assertThat(rejections("queue-full")).isZero();
+        assertThat(gauge("bulkhead.calls.queued")).isZero();
+    }
+
+    @Test
+    void queuedCallShouldNotWaitPastRequestDeadline() {
+        Bulkhead bulkhead = new Bulkhead("test", 1, 1, Duration.ofSeconds(5), meterRegistry);
+        blockingCall(bulkhead);
+        awaitGauge("bulkhead.calls.active", 1);
+
+        RequestDeadline.set(Duration.ofMillis(50));
+        try {
+            assertThatThrownBy(() -> bulkhead.execute(() -> "late"))
+                    .isInstanceOf(DeadlineExceededException.class);
+        } finally {
+            RequestDeadline.clear();
+        }
+    }
+
+    @Test
+    void permitShouldBeReleasedWhenCallThrows() {
+        Bulkhead bulkhead = new Bulkhead("test", 1, 0, Duration.ZERO, meterRegistry);
+
+        assertThatThrownBy(() -> bulkhead.execute(() -> {
+            throw new IllegalStateException("keycloak is down");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> bulkhead.execute(() -> {
+            throw new AssertionError("unexpected");
+        })).isInstanceOf(AssertionError.class);
+
+        assertThat(gauge("bulkhead.calls.active")).isZero();
+        assertThat(bulkhead.execute(() -> "next")).isEqualTo("next");
+    }
+
+    private CompletableFuture<String> blockingCall(Bulkhead bulkhead) {
+        return CompletableFuture.supplyAsync(() -> bulkhead.execute(() -> {
+            try {
+                callsReleased.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return "done";
+        }), callers);
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).tag("bulkhead", "test").gauge().value();
+    }
+
+    private double rejections(String reason) {
+        return meterRegistry.get("bulkhead.calls.rejected").tag("bulkhead", "test").tag("reason", reason)
+                .counter().count();
+    }
+
+    private void awaitGauge(String name, double expected) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (gauge(name) != expected) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError(name + " did not reach " + expected);
+            }
+            Thread.onSpinWait();
+        }
+    }
+}
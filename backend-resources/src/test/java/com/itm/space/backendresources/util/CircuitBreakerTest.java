@@ -0,0 +1,156 @@
+package com.itm.space.backendresources.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CircuitBreakerTest {
+    private static final Duration WAIT_IN_OPEN = Duration.ofMillis(100);
+
+    // Окно из 10 вызовов, решение после 4; порог ошибок 50%, медленных 50% (дольше 50 мс); 2 пробных вызова
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker("test",
+            new CircuitBreaker.Settings(10, 4, 50, 50, Duration.ofMillis(50), WAIT_IN_OPEN, 2),
+            ex -> ex instanceof IllegalArgumentException ? CircuitBreaker.Outcome.IGNORED
+                    : CircuitBreaker.Outcome.FAILURE,
+            new SimpleMeterRegistry());
+
+    @Nested
+    class Closed {
+
+        @Test
+        void shouldOpenOnFailureRate() {
+            succeed();
+            succeed();
+            fail();
+            assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+            fail();
+
+            assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+            assertThatThrownBy(() -> circuitBreaker.execute(() -> "rejected"))
+                    .isInstanceOf(CallNotPermittedException.class);
+        }
+
+        @Test
+        void shouldOpenOnSlowCallRate() {
+            succeed();
+            succeed();
+            circuitBreaker.execute(() -> sleep(Duration.ofMillis(60)));
+            circuitBreaker.execute(() -> sleep(Duration.ofMillis(60)));
+
+            assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        }
+
+        @Test
+        void ignoredOutcomesShouldNotCount() {
+            for (int i = 0; i < 10; i++) {
+                assertThatThrownBy(() -> circuitBreaker.execute(() -> {
+                    throw new IllegalArgumentException("bad request");
+                })).isInstanceOf(IllegalArgumentException.class);
+            }
+
+            assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        }
+    }
+
+    @Nested
+    class HalfOpen {
+
+        @Test
+        void shouldLetProbesThroughAfterWaitInOpen() {
+            open();
+            sleep(WAIT_IN_OPEN.plusMillis(20));
+
+            succeed();
+            assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+            succeed();
+
+            assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        }
+
+        @Test
+        void failedProbeShouldOpenAgain() {
+            open();
+            sleep(WAIT_IN_OPEN.plusMillis(20));
+
+            succeed();
+            fail();
+
+            assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        }
+
+        @Test
+        void callsBeyondProbesShouldBeRejected() {
+            open();
+            sleep(WAIT_IN_OPEN.plusMillis(20));
+
+            // Оба пробных слота заняты незавершёнными вызовами, третий отклоняется
+            assertThatThrownBy(() -> circuitBreaker.execute(() -> circuitBreaker.execute(
+                    () -> circuitBreaker.execute(() -> "third"))))
+                    .isInstanceOf(CallNotPermittedException.class);
+        }
+
+        @Test
+        void ignoredAndErrorProbesShouldReleaseTheirSlots() {
+            open();
+            sleep(WAIT_IN_OPEN.plusMillis(20));
+
+            assertThatThrownBy(() -> circuitBreaker.execute(() -> {
+                throw new IllegalArgumentException("bad request");
+            })).isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> circuitBreaker.execute(() -> {
+                throw new AssertionError("unexpected");
+            })).isInstanceOf(AssertionError.class);
+
+            // Слоты освобождены, поэтому два следующих пробных вызова проходят и замыкают breaker
+            succeed();
+            succeed();
+            assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        }
+
+        @Test
+        void resultOfCallStartedBeforeTransitionShouldBeIgnored() {
+            // Вызов начат в CLOSED, а завершается, когда breaker уже в HALF_OPEN с одним успешным пробным вызовом
+            circuitBreaker.execute(() -> {
+                open();
+                sleep(WAIT_IN_OPEN.plusMillis(20));
+                succeed();
+                return "stale";
+            });
+
+            // Иначе его успех стал бы вторым пробным вызовом и замкнул бы breaker
+            assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        }
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            fail();
+        }
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    private void succeed() {
+        circuitBreaker.execute(() -> "ok");
+    }
+
+    private void fail() {
+        assertThatThrownBy(() -> circuitBreaker.execute(() -> {
+            throw new IllegalStateException("keycloak is down");
+        })).isInstanceOf(IllegalStateException.class);
+    }
+
+    private static String sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return "slept";
+    }
+}
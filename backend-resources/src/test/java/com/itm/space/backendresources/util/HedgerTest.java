@@ -0,0 +1,171 @@
+package com.itm.space.backendresources.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HedgerTest {
+    private static final Duration DELAY = Duration.ofMillis(20);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Nested
+    class Attempts {
+
+        @Test
+        void fastPrimaryShouldNotBeHedged() {
+            Hedger hedger = hedger(100);
+
+            assertThat(hedger.execute(() -> "primary", DELAY)).isEqualTo("primary");
+            assertThat(count("hedged")).isZero();
+        }
+
+        @Test
+        void hedgeShouldWinAndInterruptSlowPrimary() throws InterruptedException {
+            Hedger hedger = hedger(100);
+            CountDownLatch primaryInterrupted = new CountDownLatch(1);
+
+            String result = hedger.execute(attempts(() -> blockUntilInterrupted(primaryInterrupted), () -> "hedge"),
+                    DELAY);
+
+            assertThat(result).isEqualTo("hedge");
+            assertThat(primaryInterrupted.await(2, TimeUnit.SECONDS)).isTrue();
+            assertThat(count("hedged")).isEqualTo(1);
+            assertThat(count("won")).isEqualTo(1);
+        }
+
+        @Test
+        void primaryShouldWinAndInterruptHedge() throws InterruptedException {
+            Hedger hedger = hedger(100);
+            CountDownLatch hedgeInterrupted = new CountDownLatch(1);
+
+            String result = hedger.execute(attempts(() -> sleepAndReturn(Duration.ofMillis(100), "primary"),
+                    () -> blockUntilInterrupted(hedgeInterrupted)), DELAY);
+
+            assertThat(result).isEqualTo("primary");
+            assertThat(hedgeInterrupted.await(2, TimeUnit.SECONDS)).isTrue();
+            assertThat(count("wasted")).isEqualTo(1);
+        }
+
+        @Test
+        void failedHedgeShouldNotHidePrimaryResult() {
+            Hedger hedger = hedger(100);
+
+            String result = hedger.execute(attempts(() -> sleepAndReturn(Duration.ofMillis(100), "primary"), () -> {
+                throw new IllegalStateException("hedge failed");
+            }), DELAY);
+
+            assertThat(result).isEqualTo("primary");
+        }
+
+        @Test
+        void shouldFailOnlyWhenBothAttemptsFail() {
+            Hedger hedger = hedger(100);
+            AtomicInteger attempts = new AtomicInteger();
+
+            assertThatThrownBy(() -> hedger.execute(() -> {
+                int attempt = attempts.getAndIncrement();
+                sleepAndReturn(attempt == 0 ? Duration.ofMillis(100) : Duration.ZERO, "ignored");
+                throw new IllegalStateException("attempt " + attempt + " failed");
+            }, DELAY)).isInstanceOf(IllegalStateException.class).hasMessage("attempt 0 failed");
+            assertThat(attempts.get()).isEqualTo(2);
+        }
+    }
+
+    @Nested
+    class Budget {
+
+        @Test
+        void hedgesShouldBeCappedByBudget() {
+            // 50% - жетон на копию набирается за два вызова
+            Hedger hedger = hedger(50);
+
+            for (int i = 0; i < 10; i++) {
+                hedger.execute(() -> sleepAndReturn(Duration.ofMillis(40), "slow"), Duration.ofMillis(1));
+            }
+
+            assertThat(count("hedged")).isEqualTo(5);
+        }
+
+        @Test
+        void saturatedExecutorShouldSkipHedge() {
+            useSingleThreadWithoutQueue();
+            Hedger hedger = hedger(100);
+
+            assertThat(hedger.execute(() -> sleepAndReturn(Duration.ofMillis(100), "primary"), DELAY))
+                    .isEqualTo("primary");
+            assertThat(count("hedged")).isZero();
+        }
+
+        @Test
+        void saturatedExecutorShouldRunPrimaryOnCaller() {
+            useSingleThreadWithoutQueue();
+            CountDownLatch blocker = new CountDownLatch(1);
+            executor.execute(() -> blockUntilInterrupted(blocker));
+            Hedger hedger = hedger(100);
+
+            String thread = hedger.execute(() -> Thread.currentThread().getName(), DELAY);
+
+            assertThat(thread).isEqualTo(Thread.currentThread().getName());
+        }
+    }
+
+    private Hedger hedger(double budgetPercent) {
+        return new Hedger("test", executor, budgetPercent, meterRegistry);
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("hedging.requests").tag("result", result).counter().count();
+    }
+
+    // Как пул хеджирования в KeycloakUserGateway, но из одного потока
+    private void useSingleThreadWithoutQueue() {
+        executor.shutdownNow();
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new SynchronousQueue<>());
+    }
+
+    // Первый вызов - исходная попытка, второй - копия
+    private static <T> Supplier<T> attempts(Supplier<T> primary, Supplier<T> hedge) {
+        AtomicInteger attempts = new AtomicInteger();
+        return () -> attempts.getAndIncrement() == 0 ? primary.get() : hedge.get();
+    }
+
+    private static String blockUntilInterrupted(CountDownLatch interrupted) {
+        try {
+            new CountDownLatch(1).await();
+        } catch (InterruptedException ex) {
+            interrupted.countDown();
+        }
+        throw new IllegalStateException("interrupted");
+    }
+
+    private static String sleepAndReturn(Duration duration, String value) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+        return value;
+    }
+}
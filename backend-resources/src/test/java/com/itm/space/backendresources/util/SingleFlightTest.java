@@ -0,0 +1,173 @@
+package com.itm.space.backendresources.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+    private static final Duration MAX_WAIT = Duration.ofSeconds(5);
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    private final ExecutorService callers = Executors.newFixedThreadPool(4);
+    private final ExecutorService loaders = Executors.newCachedThreadPool();
+    private final CountDownLatch loadReleased = new CountDownLatch(1);
+    private final CountDownLatch loadInterrupted = new CountDownLatch(1);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        loadReleased.countDown();
+        callers.shutdownNow();
+        loaders.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallsForSameKeyShouldShareOneLoad() throws Exception {
+        CompletableFuture<String> leader = call("user", this::blockingLoad);
+        awaitCoalesced(0);
+        CompletableFuture<String> first = call("user", this::blockingLoad);
+        CompletableFuture<String> second = call("user", this::blockingLoad);
+        awaitCoalesced(2);
+
+        loadReleased.countDown();
+
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("loaded-1");
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("loaded-1");
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("loaded-1");
+        assertThat(loads).hasValue(1);
+        assertThat(singleFlight.originatingCount()).isEqualTo(1);
+        assertThat(singleFlight.coalescedCount()).isEqualTo(2);
+    }
+
+    @Test
+    void differentKeysShouldLoadSeparately() {
+        assertThat(singleFlight.execute("a", () -> "a-" + loads.incrementAndGet(), loaders, MAX_WAIT))
+                .isEqualTo("a-1");
+        assertThat(singleFlight.execute("b", () -> "b-" + loads.incrementAndGet(), loaders, MAX_WAIT))
+                .isEqualTo("b-2");
+        assertThat(singleFlight.originatingCount()).isEqualTo(2);
+        assertThat(singleFlight.coalescedCount()).isZero();
+    }
+
+    @Test
+    void leaderExceptionShouldReachFollowers() throws Exception {
+        IllegalStateException failure = new IllegalStateException("keycloak is down");
+        CompletableFuture<String> leader = call("user", () -> {
+            blockingLoad();
+            throw failure;
+        });
+        awaitCoalesced(0);
+        CompletableFuture<String> follower = call("user", this::blockingLoad);
+        awaitCoalesced(1);
+
+        loadReleased.countDown();
+
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class)
+                .hasCause(failure);
+        assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class)
+                .hasCause(failure);
+    }
+
+    @Test
+    void keyShouldBeReleasedAfterLoad() {
+        assertThatThrownBy(() -> singleFlight.execute("user", () -> {
+            throw new IllegalStateException("first load fails");
+        }, loaders, MAX_WAIT)).isInstanceOf(IllegalStateException.class);
+
+        // После завершения загрузки, в том числе с ошибкой, следующий вызов грузит заново
+        assertThat(singleFlight.execute("user", () -> "loaded", loaders, MAX_WAIT)).isEqualTo("loaded");
+        assertThat(singleFlight.execute("user", () -> "reloaded", loaders, MAX_WAIT)).isEqualTo("reloaded");
+        assertThat(singleFlight.originatingCount()).isEqualTo(3);
+        assertThat(singleFlight.coalescedCount()).isZero();
+    }
+
+    @Test
+    void followerShouldGiveUpAfterMaxWait() throws Exception {
+        CompletableFuture<String> leader = call("user", this::blockingLoad);
+        awaitCoalesced(0);
+
+        assertThatThrownBy(() -> singleFlight.execute("user", this::blockingLoad, loaders, Duration.ofMillis(50)))
+                .isInstanceOf(DeadlineExceededException.class);
+
+        // Таймаут одного ожидающего не отменяет загрузку, которую ждут другие
+        loadReleased.countDown();
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("loaded-1");
+        assertThat(loadInterrupted.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void leaderShouldGiveUpAfterItsOwnMaxWait() throws Exception {
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(
+                () -> singleFlight.execute("user", this::blockingLoad, loaders, Duration.ofMillis(100)), callers);
+        awaitCoalesced(0);
+        CompletableFuture<String> follower = call("user", this::blockingLoad);
+        awaitCoalesced(1);
+
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(DeadlineExceededException.class);
+
+        loadReleased.countDown();
+        assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("loaded-1");
+    }
+
+    @Test
+    void loadShouldBeCancelledWhenLastCallerGivesUp() throws Exception {
+        assertThatThrownBy(() -> singleFlight.execute("user", this::blockingLoad, loaders, Duration.ofMillis(50)))
+                .isInstanceOf(DeadlineExceededException.class);
+
+        assertThat(loadInterrupted.await(5, TimeUnit.SECONDS)).isTrue();
+        // Отменённая загрузка не достаётся следующему вызову
+        assertThat(singleFlight.execute("user", () -> "reloaded", loaders, MAX_WAIT)).isEqualTo("reloaded");
+    }
+
+    @Test
+    void rejectedLoadShouldFailCaller() {
+        Executor saturated = task -> {
+            throw new RejectedExecutionException("saturated");
+        };
+
+        assertThatThrownBy(() -> singleFlight.execute("user", () -> "loaded", saturated, MAX_WAIT))
+                .isInstanceOf(RejectedExecutionException.class);
+        assertThat(singleFlight.execute("user", () -> "loaded", loaders, MAX_WAIT)).isEqualTo("loaded");
+    }
+
+    private CompletableFuture<String> call(String key, Supplier<String> loader) {
+        return CompletableFuture.supplyAsync(() -> singleFlight.execute(key, loader, loaders, MAX_WAIT), callers);
+    }
+
+    private String blockingLoad() {
+        int load = loads.incrementAndGet();
+        try {
+            loadReleased.await();
+        } catch (InterruptedException ex) {
+            loadInterrupted.countDown();
+            Thread.currentThread().interrupt();
+        }
+        return "loaded-" + load;
+    }
+
+    // Ждём, пока лидер начнёт загрузку и к ней присоединится нужное число вызовов
+    private void awaitCoalesced(long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (loads.get() == 0 || singleFlight.coalescedCount() < expected) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Expected " + expected + " coalesced calls");
+            }
+            Thread.sleep(10);
+        }
+    }
+}